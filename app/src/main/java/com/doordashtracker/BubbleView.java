@@ -0,0 +1,116 @@
+package com.doordashtracker;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.view.View;
+import com.doordashtracker.core.PerfStats;
+import com.doordashtracker.core.TextBuffer;
+
+/**
+ * The collapsed overlay: a disc with the acceptance rate written in the middle
+ * and drawn as a ring around it in the rate's tier color. Everything is drawn
+ * straight onto the canvas, so the bubble is one view with no background
+ * drawable, and a redraw only happens when the shown rate or tier changes.
+ */
+class BubbleView extends View {
+
+    static final int SIZE_DP = 60;
+
+    private static final int DISC_COLOR = 0xE6000000;
+    private static final int TRACK_COLOR = 0xFF424242;
+    private static final int EMPTY_TEXT_COLOR = 0xFFFFFFFF;
+    private static final float RING_WIDTH_DP = 4f;
+
+    private final Paint discPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint trackPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint ringPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF ringBounds = new RectF();
+    private final TextBuffer label = new TextBuffer(8);
+    private final int sizePx;
+
+    /** Negative while there are no orders. */
+    private int permille = Integer.MIN_VALUE;
+    private int tier = -1;
+    private float labelX;
+    private float labelBaseline;
+
+    BubbleView(Context context) {
+        super(context);
+        float density = getResources().getDisplayMetrics().density;
+        sizePx = Math.round(SIZE_DP * density);
+        float ringWidth = RING_WIDTH_DP * density;
+
+        discPaint.setColor(DISC_COLOR);
+        trackPaint.setStyle(Paint.Style.STROKE);
+        trackPaint.setStrokeWidth(ringWidth);
+        trackPaint.setColor(TRACK_COLOR);
+        ringPaint.setStyle(Paint.Style.STROKE);
+        ringPaint.setStrokeWidth(ringWidth);
+        textPaint.setTextSize(15 * getResources().getDisplayMetrics().scaledDensity);
+        textPaint.setFakeBoldText(true);
+        textPaint.setTextAlign(Paint.Align.CENTER);
+        setRate(-1, 0);
+    }
+
+    /** Shows {@code permille}, or a placeholder if it is negative, colored as {@code tier}. */
+    void setRate(int permille, int tier) {
+        if (permille < 0) {
+            permille = -1;
+        }
+        if (permille == this.permille && tier == this.tier) {
+            return;
+        }
+        this.permille = permille;
+        this.tier = tier;
+        if (permille < 0) {
+            label.clear().append("AR");
+            textPaint.setColor(EMPTY_TEXT_COLOR);
+        } else {
+            // Whole percent: the tenths do not fit inside the ring.
+            label.clear().append((permille + 5) / 10).append('%');
+            textPaint.setColor(Tiers.color(tier));
+        }
+        ringPaint.setColor(Tiers.color(tier));
+        invalidate();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        setMeasuredDimension(resolveSize(sizePx, widthMeasureSpec), resolveSize(sizePx, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        float inset = ringPaint.getStrokeWidth() / 2;
+        ringBounds.set(inset, inset, w - inset, h - inset);
+        labelX = w / 2f;
+        labelBaseline = h / 2f - (textPaint.ascent() + textPaint.descent()) / 2;
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        long startNanos = System.nanoTime();
+        super.draw(canvas);
+        PerfStats.OVERLAY_DRAW.recordSince(startNanos);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        // The disc stops at the inside of the ring and the track only fills
+        // what the arc leaves, so only the label is drawn over anything.
+        float discRadius = (ringBounds.width() - ringPaint.getStrokeWidth()) / 2;
+        canvas.drawCircle(ringBounds.centerX(), ringBounds.centerY(), discRadius, discPaint);
+        float sweep = permille > 0 ? 360f * Math.min(permille, 1000) / 1000f : 0f;
+        if (sweep < 360f) {
+            canvas.drawArc(ringBounds, -90f + sweep, 360f - sweep, false, trackPaint);
+        }
+        if (sweep > 0f) {
+            canvas.drawArc(ringBounds, -90f, sweep, false, ringPaint);
+        }
+        canvas.drawText(label.chars(), 0, label.length(), labelX, labelBaseline, textPaint);
+    }
+}
@@ -0,0 +1,67 @@
+package com.doordashtracker;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import com.doordashtracker.core.EventStore;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Logs a decision tapped on the widget or the tile. If the app is not running
+ * the decision is logged with {@link TrackerEngine#logDetached} on a
+ * background thread, without loading the history. Otherwise it goes through
+ * the engine, and the receiver stays alive only until the journal write is
+ * done; the engine then refreshes the widget and tile from the new snapshot.
+ */
+public class DecisionReceiver extends BroadcastReceiver {
+
+    /** One tap at a time, so two quick taps never advance the same snapshot. */
+    private static final ExecutorService detachedExecutor = Executors.newSingleThreadExecutor();
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        final boolean accepted = HomeSurfaces.ACTION_ACCEPT.equals(action);
+        if (!accepted && !HomeSurfaces.ACTION_DECLINE.equals(action)) {
+            return;
+        }
+        final byte source = intent.getByteExtra(HomeSurfaces.EXTRA_SOURCE, EventStore.SOURCE_WIDGET);
+
+        final PendingResult result = goAsync();
+        final Context appContext = context.getApplicationContext();
+        if (TrackerEngine.hasInstance()) {
+            logThroughEngine(appContext, accepted, source, result);
+            return;
+        }
+        detachedExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (TrackerEngine.logDetached(appContext, accepted, source)) {
+                    result.finish();
+                    return;
+                }
+                new Handler(Looper.getMainLooper()).post(new Runnable() {
+                    @Override
+                    public void run() {
+                        logThroughEngine(appContext, accepted, source, result);
+                    }
+                });
+            }
+        });
+    }
+
+    /** Main thread only. */
+    private static void logThroughEngine(Context context, boolean accepted, byte source, final PendingResult result) {
+        TrackerEngine engine = TrackerEngine.getInstance(context);
+        engine.addOrder(accepted, source);
+        engine.drain(new Runnable() {
+            @Override
+            public void run() {
+                result.finish();
+            }
+        });
+    }
+}
@@ -1,68 +1,96 @@
 package com.doordashtracker;
 
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
 import android.content.Intent;
-import android.content.SharedPreferences;
-import android.graphics.Outline;
-import android.graphics.PixelFormat;
+import android.graphics.Rect;
 import android.os.Build;
-import android.os.Handler;
 import android.os.IBinder;
-import android.os.Looper;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.util.DisplayMetrics;
 import android.view.Gravity;
 import android.view.LayoutInflater;
-import android.view.MotionEvent;
 import android.view.View;
-import android.view.ViewOutlineProvider;
+import android.view.ViewTreeObserver;
 import android.view.WindowManager;
+import android.view.animation.DecelerateInterpolator;
 import android.widget.Button;
+import android.widget.FrameLayout;
 import android.widget.ImageButton;
 import android.widget.TextView;
 import androidx.core.app.NotificationCompat;
-import java.util.ArrayList;
-import java.util.List;
+import com.doordashtracker.core.AcceptanceProjection;
+import com.doordashtracker.core.EventStore;
+import com.doordashtracker.core.LatencyHistogram;
+import com.doordashtracker.core.PerfStats;
+import com.doordashtracker.core.TextBuffer;
+import com.doordashtracker.core.TrackerState;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 
-public class FloatingARService extends Service {
+public class FloatingARService extends Service implements TrackerEngine.Listener {
+
+    /** {@link SystemClock#uptimeMillis()} when the service was requested, for startup timing. */
+    public static final String EXTRA_START_UPTIME = "com.doordashtracker.extra.START_UPTIME";
 
-    private static final int MAX_ORDERS = 100;
-    private static final String PREFS_NAME = "DoordashTrackerPrefs";
-    private static final String KEY_ORDER_HISTORY = "orderHistory";
     private static final String CHANNEL_ID = "floating_ar_channel";
     private static final int NOTIFICATION_ID = 1;
+    private static final long TRANSITION_DURATION_MS = 180;
 
     private WindowManager windowManager;
-    private View collapsedView;
+    // One overlay window hosts both the bubble and the panel; collapsing and
+    // expanding only swaps which child is visible and resizes the window.
+    private FrameLayout overlayRoot;
+    private BubbleView collapsedView;
     private View floatingView;
-    private View customToastView;
 
-    private WindowManager.LayoutParams collapsedParams;
-    private WindowManager.LayoutParams floatingParams;
-    private WindowManager.LayoutParams toastParams;
+    private WindowManager.LayoutParams overlayParams;
+
+    private OverlayToast overlayToast;
+    private OverlayDragController overlayDrag;
+    private ValueAnimator transitionAnimator;
+    private final Rect transitionClip = new Rect();
 
-    private List<Boolean> orderHistory;
-    private int lastX;
-    private int lastY;
+    // Where the bubble sat before the panel was expanded, restored on collapse.
+    private int bubbleX;
+    private int bubbleY;
+    private boolean bubblePlaced;
+    /** Whether the panel grows leftwards from a bubble docked on the right. */
+    private boolean anchoredEnd;
+
+    private TrackerEngine trackerEngine;
+    private TrackerState trackerState;
 
     private static final int STATE_COLLAPSED = 0;
     private static final int STATE_FLOATING = 1;
     private int currentState = STATE_FLOATING;
 
-    private TextView floatingARText;
+    private RateView floatingARText;
+    private TextView floatingFallOffText;
+    private TextView floatingProjectionText;
     private Button floatingAcceptButton;
     private Button floatingDeclineButton;
+    /** Hidden timing panel, toggled by long-pressing the rate. */
+    private TextView debugText;
 
-    private Handler mainHandler;
+    private static final int NOT_SHOWN = Integer.MIN_VALUE;
 
-    @Override
-    public void onCreate() {
-        super.onCreate();
-        mainHandler = new Handler(Looper.getMainLooper());
-    }
+    // The overlay stays up for a whole shift, so refreshes reuse these buffers
+    // and skip TextView calls when what is displayed would not change.
+    private final TextBuffer fallOffBuffer = new TextBuffer(32);
+    private final TextBuffer projectionBuffer = new TextBuffer(24);
+    private int shownFallOff = NOT_SHOWN;
+    private int shownProjectionTarget = NOT_SHOWN;
+    private int shownProjectionAccepts = NOT_SHOWN;
+    /** Version of the state the projection text was computed from, or -1. */
+    private long projectedVersion = -1L;
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
@@ -71,24 +99,44 @@ public class FloatingARService extends Service {
         startForeground(NOTIFICATION_ID, createNotification());
 
         if (floatingView == null) {
-            orderHistory = new ArrayList<>();
-            loadOrderHistory();
+            Trace.beginSection("FloatingARService.createOverlay");
+            try {
+                createOverlay();
+            } finally {
+                Trace.endSection();
+            }
+            if (intent != null && intent.hasExtra(EXTRA_START_UPTIME)) {
+                recordFirstFrame(PerfStats.OVERLAY_START, intent.getLongExtra(EXTRA_START_UPTIME, 0));
+            }
+        }
 
-            windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
+        return START_STICKY;
+    }
 
-            collapsedView = LayoutInflater.from(this).inflate(R.layout.floating_collapsed_layout, null);
-            floatingView = LayoutInflater.from(this).inflate(R.layout.floating_ar_layout, null);
+    /**
+     * Shows the panel straight away. The history loads in the background, and
+     * the rate shows its placeholder until the engine delivers the first state.
+     * The bubble is only created when the panel is first minimized.
+     */
+    private void createOverlay() {
+        // Starts loading the history on the engine's writer thread.
+        trackerEngine = TrackerEngine.getInstance(this);
 
-            setupWindowParams();
-            setupCollapsedView();
-            setupFloatingView();
+        windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
 
-            windowManager.addView(floatingView, floatingParams);
-            currentState = STATE_FLOATING;
-            updateFloatingUI();
-        }
+        overlayRoot = new FrameLayout(this);
+        floatingView = LayoutInflater.from(this).inflate(R.layout.floating_ar_layout, overlayRoot, false);
+        overlayRoot.addView(floatingView);
 
-        return START_STICKY;
+        overlayToast = new OverlayToast(this, windowManager);
+
+        setupWindowParams();
+        overlayDrag = new OverlayDragController(windowManager, overlayRoot, overlayParams);
+        setupFloatingView();
+
+        windowManager.addView(overlayRoot, overlayParams);
+        currentState = STATE_FLOATING;
+        trackerEngine.addListener(this);
     }
 
     private void createNotificationChannel() {
@@ -131,33 +179,13 @@ public class FloatingARService extends Service {
     }
 
     private void setupWindowParams() {
-        collapsedParams = createDefaultParams();
-        floatingParams = createDefaultParams();
+        overlayParams = createDefaultParams();
 
-        DisplayMetrics displayMetrics = getResources().getDisplayMetrics();
-        int bubbleSize = (int) (displayMetrics.density * 60.0f);
-
-        collapsedParams.gravity = Gravity.TOP | Gravity.START;
-        collapsedParams.width = bubbleSize;
-        collapsedParams.height = bubbleSize;
-        collapsedParams.x = 100;
-        collapsedParams.y = 100;
-
-        floatingParams.gravity = Gravity.TOP | Gravity.START;
-        floatingParams.width = WindowManager.LayoutParams.WRAP_CONTENT;
-        floatingParams.height = WindowManager.LayoutParams.WRAP_CONTENT;
-        floatingParams.x = 0;
-        floatingParams.y = 200;
-
-        toastParams = new WindowManager.LayoutParams(
-                WindowManager.LayoutParams.WRAP_CONTENT,
-                WindowManager.LayoutParams.WRAP_CONTENT,
-                WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY,
-                WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE | WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE,
-                PixelFormat.TRANSLUCENT
-        );
-        toastParams.gravity = Gravity.BOTTOM | Gravity.CENTER_HORIZONTAL;
-        toastParams.y = (int) (65 * displayMetrics.density);
+        overlayParams.gravity = Gravity.TOP | Gravity.START;
+        overlayParams.width = WindowManager.LayoutParams.WRAP_CONTENT;
+        overlayParams.height = WindowManager.LayoutParams.WRAP_CONTENT;
+        overlayParams.x = 0;
+        overlayParams.y = 200;
     }
 
     private WindowManager.LayoutParams createDefaultParams() {
@@ -171,8 +199,17 @@ public class FloatingARService extends Service {
         );
     }
 
-    private void setupCollapsedView() {
-        setupDrag(collapsedView, collapsedParams);
+    private void createCollapsedView() {
+        collapsedView = new BubbleView(this);
+        int size = Math.round(BubbleView.SIZE_DP * getResources().getDisplayMetrics().density);
+        collapsedView.setLayoutParams(new FrameLayout.LayoutParams(size, size));
+        collapsedView.setVisibility(View.GONE);
+        overlayRoot.addView(collapsedView);
+        if (trackerState != null) {
+            collapsedView.setRate(trackerState.isEmpty() ? -1 : trackerState.acceptancePermille(),
+                    trackerState.rateTier());
+        }
+        collapsedView.setOnTouchListener(overlayDrag);
 
         collapsedView.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -184,23 +221,19 @@ public class FloatingARService extends Service {
 
     private void setupFloatingView() {
         floatingARText = floatingView.findViewById(R.id.floating_ar_text);
+        floatingFallOffText = floatingView.findViewById(R.id.floating_falloff_text);
+        floatingProjectionText = floatingView.findViewById(R.id.floating_projection_text);
         floatingAcceptButton = floatingView.findViewById(R.id.floating_accept_button);
         floatingDeclineButton = floatingView.findViewById(R.id.floating_decline_button);
+        debugText = floatingView.findViewById(R.id.floating_debug_text);
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-            final float cornerRadiusDp = 16f;
-            final float cornerRadiusPx = cornerRadiusDp * getResources().getDisplayMetrics().density;
-
-            floatingView.setOutlineProvider(new ViewOutlineProvider() {
-                @Override
-                public void getOutline(View view, Outline outline) {
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                        outline.setRoundRect(0, 0, view.getWidth(), view.getHeight(), cornerRadiusPx);
-                    }
-                }
-            });
-            floatingView.setClipToOutline(true);
-        }
+        floatingARText.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                toggleDebugPanel();
+                return true;
+            }
+        });
 
         ImageButton minimizeButton = floatingView.findViewById(R.id.floating_minimize_button);
         ImageButton maximizeButton = floatingView.findViewById(R.id.floating_maximize_button);
@@ -241,106 +274,161 @@ public class FloatingARService extends Service {
             }
         });
 
-        setupDrag(floatingView, floatingParams);
+        floatingView.findViewById(R.id.floating_drag_handle).setOnTouchListener(overlayDrag);
     }
 
-    private void setupDrag(final View view, final WindowManager.LayoutParams params) {
-        View dragHandle;
-
-        if (view == collapsedView) {
-            dragHandle = view;
-        } else {
-            dragHandle = view.findViewById(R.id.floating_drag_handle);
+    private void transitionToState(int newState) {
+        if (currentState == newState) {
+            return;
         }
+        Trace.beginSection("FloatingARService.transition");
+        try {
+            if (transitionAnimator != null) {
+                transitionAnimator.end();
+            }
+            overlayDrag.cancel();
+            if (collapsedView == null) {
+                createCollapsedView();
+            }
 
-        dragHandle.setOnTouchListener(new View.OnTouchListener() {
-            private static final long CLICK_TIME_THRESHOLD = 200;
-            private float initialTouchX;
-            private float initialTouchY;
-            private int initialX;
-            private int initialY;
-            private long lastClickTime = 0;
+            final View fromView = getCurrentView();
+            currentState = newState;
+            final View toView = getCurrentView();
+            overlayDrag.setSnapToEdge(newState == STATE_COLLAPSED);
+            if (newState == STATE_FLOATING && trackerState != null) {
+                updateFloatingUI();
+            }
 
-            @Override
-            public boolean onTouch(View v, MotionEvent event) {
-                switch (event.getAction()) {
-                    case MotionEvent.ACTION_DOWN:
-                        initialX = params.x;
-                        initialY = params.y;
-                        initialTouchX = event.getRawX();
-                        initialTouchY = event.getRawY();
-                        lastClickTime = System.currentTimeMillis();
-                        return true;
-
-                    case MotionEvent.ACTION_UP:
-                        if (System.currentTimeMillis() - lastClickTime < CLICK_TIME_THRESHOLD &&
-                                view == collapsedView) {
-                            transitionToState(STATE_FLOATING);
-                        }
-                        return true;
-
-                    case MotionEvent.ACTION_MOVE:
-                        if (System.currentTimeMillis() - lastClickTime > CLICK_TIME_THRESHOLD) {
-                            params.x = initialX + (int) (event.getRawX() - initialTouchX);
-                            params.y = initialY + (int) (event.getRawY() - initialTouchY);
-                            windowManager.updateViewLayout(view, params);
-                        }
-                        return true;
-                }
-                return false;
+            final int fromWidth = fromView.getWidth();
+            final int fromHeight = fromView.getHeight();
+            toView.measure(measureSpecFor(toView.getLayoutParams().width),
+                    measureSpecFor(toView.getLayoutParams().height));
+            final int toWidth = toView.getMeasuredWidth();
+            final int toHeight = toView.getMeasuredHeight();
+            if (newState == STATE_FLOATING) {
+                placePanel(fromWidth, toWidth, toHeight);
             }
-        });
-    }
 
-    private void transitionToState(int newState) {
-        if (currentState == newState) {
-            return;
+            // Size the window once to cover both states and animate a clip
+            // inside it, instead of issuing a window relayout every frame.
+            final int windowWidth = Math.max(fromWidth, toWidth);
+            overlayParams.width = windowWidth;
+            overlayParams.height = Math.max(fromHeight, toHeight);
+            updateOverlayLayout();
+
+            toView.setAlpha(0f);
+            toView.setVisibility(View.VISIBLE);
+            setTransitionClip(windowWidth, fromWidth, fromHeight);
+            recordFirstFrame(PerfStats.OVERLAY_TRANSITION, SystemClock.uptimeMillis());
+
+            transitionAnimator = ValueAnimator.ofFloat(0f, 1f);
+            transitionAnimator.setDuration(TRANSITION_DURATION_MS);
+            transitionAnimator.setInterpolator(new DecelerateInterpolator());
+            transitionAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+                @Override
+                public void onAnimationUpdate(ValueAnimator animation) {
+                    float fraction = (float) animation.getAnimatedValue();
+                    setTransitionClip(windowWidth,
+                            fromWidth + Math.round((toWidth - fromWidth) * fraction),
+                            fromHeight + Math.round((toHeight - fromHeight) * fraction));
+                    fromView.setAlpha(1f - fraction);
+                    toView.setAlpha(fraction);
+                }
+            });
+            transitionAnimator.addListener(new AnimatorListenerAdapter() {
+                @Override
+                public void onAnimationEnd(Animator animation) {
+                    transitionAnimator = null;
+                    fromView.setVisibility(View.GONE);
+                    fromView.setAlpha(1f);
+                    toView.setAlpha(1f);
+                    overlayRoot.setClipBounds(null);
+                    overlayParams.width = WindowManager.LayoutParams.WRAP_CONTENT;
+                    overlayParams.height = WindowManager.LayoutParams.WRAP_CONTENT;
+                    if (toView == collapsedView && bubblePlaced) {
+                        overlayParams.x = bubbleX;
+                        overlayParams.y = bubbleY;
+                    }
+                    if (overlayRoot.getParent() != null) {
+                        updateOverlayLayout();
+                    }
+                }
+            });
+            transitionAnimator.start();
+        } finally {
+            Trace.endSection();
         }
+    }
 
-        View currentView = getCurrentView();
-        WindowManager.LayoutParams currentParams = getCurrentParams();
-
-        if (currentView != null && currentView.getParent() != null) {
-            lastX = currentParams.x;
-            lastY = currentParams.y;
-            windowManager.removeView(currentView);
+    /**
+     * Positions the window for the panel about to expand from the bubble. The
+     * window is placed by its top-left corner and may extend past the screen,
+     * so a panel opened at the x of a bubble docked on the right would be drawn
+     * off-screen. Instead the panel's right edge is lined up with the bubble's,
+     * and the result is clamped to the screen.
+     */
+    private void placePanel(int bubbleWidth, int panelWidth, int panelHeight) {
+        DisplayMetrics metrics = getResources().getDisplayMetrics();
+        bubbleX = overlayParams.x;
+        bubbleY = overlayParams.y;
+        bubblePlaced = true;
+
+        boolean end = bubbleX + bubbleWidth / 2 > metrics.widthPixels / 2;
+        if (end != anchoredEnd) {
+            anchoredEnd = end;
+            int gravity = Gravity.TOP | (end ? Gravity.END : Gravity.START);
+            setChildGravity(floatingView, gravity);
+            setChildGravity(collapsedView, gravity);
         }
+        int x = anchoredEnd ? bubbleX + bubbleWidth - panelWidth : bubbleX;
+        overlayParams.x = clamp(x, metrics.widthPixels - panelWidth);
+        overlayParams.y = clamp(bubbleY, metrics.heightPixels - panelHeight);
+    }
 
-        currentState = newState;
+    private static void setChildGravity(View child, int gravity) {
+        FrameLayout.LayoutParams params = (FrameLayout.LayoutParams) child.getLayoutParams();
+        params.gravity = gravity;
+        child.setLayoutParams(params);
+    }
 
-        View newView = getCurrentView();
-        WindowManager.LayoutParams newParams = getCurrentParams();
+    private static int clamp(int value, int max) {
+        return Math.max(0, Math.min(max, value));
+    }
 
-        newParams.x = lastX;
-        newParams.y = lastY;
+    /** Clips the window to {@code width} by {@code height}, on the side the panel grows from. */
+    private void setTransitionClip(int windowWidth, int width, int height) {
+        int left = anchoredEnd ? windowWidth - width : 0;
+        transitionClip.set(left, 0, left + width, height);
+        overlayRoot.setClipBounds(transitionClip);
+    }
 
-        windowManager.addView(newView, newParams);
+    private void updateOverlayLayout() {
+        long startNanos = System.nanoTime();
+        windowManager.updateViewLayout(overlayRoot, overlayParams);
+        PerfStats.WINDOW_UPDATE.recordSince(startNanos);
+    }
 
-        if (currentState == STATE_FLOATING) {
-            updateFloatingUI();
+    private static int measureSpecFor(int layoutSize) {
+        if (layoutSize >= 0) {
+            return View.MeasureSpec.makeMeasureSpec(layoutSize, View.MeasureSpec.EXACTLY);
         }
+        return View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
     }
 
-    private View getCurrentView() {
-        switch (currentState) {
-            case STATE_COLLAPSED:
-                return collapsedView;
-            case STATE_FLOATING:
-                return floatingView;
-            default:
-                return floatingView;
-        }
+    /** Records the time from {@code startMs} to the next frame of the overlay window. */
+    private void recordFirstFrame(final LatencyHistogram histogram, final long startMs) {
+        overlayRoot.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                overlayRoot.getViewTreeObserver().removeOnPreDrawListener(this);
+                histogram.record((SystemClock.uptimeMillis() - startMs) * 1000000L);
+                return true;
+            }
+        });
     }
 
-    private WindowManager.LayoutParams getCurrentParams() {
-        switch (currentState) {
-            case STATE_COLLAPSED:
-                return collapsedParams;
-            case STATE_FLOATING:
-                return floatingParams;
-            default:
-                return floatingParams;
-        }
+    private View getCurrentView() {
+        return currentState == STATE_COLLAPSED ? collapsedView : floatingView;
     }
 
     private void launchMainActivity() {
@@ -352,126 +440,95 @@ public class FloatingARService extends Service {
         stopSelf();
     }
 
-    private void showCustomToast(final String message) {
-        mainHandler.post(new Runnable() {
-            @Override
-            public void run() {
-                if (customToastView != null && customToastView.getParent() != null) {
-                    windowManager.removeView(customToastView);
-                }
+    private void addOrder(boolean accepted) {
+        trackerEngine.addOrder(accepted, EventStore.SOURCE_OVERLAY);
 
-                customToastView = LayoutInflater.from(FloatingARService.this).inflate(android.R.layout.simple_list_item_1, null);
-                TextView textView = customToastView.findViewById(android.R.id.text1);
-                textView.setText(message);
-                textView.setTextSize(14);
-                textView.setTextColor(0xFFFFFFFF);
-                textView.setPadding(48, 24, 48, 24);
-                textView.setBackgroundColor(0xE6000000);
-
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                    final float cornerRadius = 24 * getResources().getDisplayMetrics().density;
-                    customToastView.setOutlineProvider(new ViewOutlineProvider() {
-                        @Override
-                        public void getOutline(View view, Outline outline) {
-                            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                                outline.setRoundRect(0, 0, view.getWidth(), view.getHeight(), cornerRadius);
-                            }
-                        }
-                    });
-                    customToastView.setClipToOutline(true);
-                }
+        overlayToast.show(accepted ? "✓ Accepted" : "✗ Declined");
+    }
 
-                try {
-                    windowManager.addView(customToastView, toastParams);
-
-                    mainHandler.postDelayed(new Runnable() {
-                        @Override
-                        public void run() {
-                            if (customToastView != null && customToastView.getParent() != null) {
-                                try {
-                                    windowManager.removeView(customToastView);
-                                } catch (Exception e) {
-                                    e.printStackTrace();
-                                }
-                                customToastView = null;
-                            }
-                        }
-                    }, 2000);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
-        });
+    @Override
+    public void onTrackerStateChanged(TrackerState state) {
+        trackerState = state;
+        updateFloatingUI();
     }
 
-    private void addOrder(boolean accepted) {
-        if (orderHistory.size() >= MAX_ORDERS) {
-            orderHistory.remove(0);
+    private void updateFloatingUI() {
+        long startNanos = System.nanoTime();
+        bindFloatingState();
+        PerfStats.OVERLAY_UPDATE.recordSince(startNanos);
+        if (debugText != null && debugText.getVisibility() == View.VISIBLE) {
+            debugText.setText(PerfStats.summary());
         }
+    }
 
-        orderHistory.add(accepted);
-        saveOrderHistory();
-
-        updateFloatingUI();
+    private void bindFloatingState() {
+        updateFallOffText();
+        updateProjectionText();
 
-        String message = accepted ? "✓ Accepted" : "✗ Declined";
-        showCustomToast(message);
+        // Both views ignore values they already show.
+        int permille = trackerState.isEmpty() ? -1 : trackerState.acceptancePermille();
+        floatingARText.setRate(permille, trackerState.rateTier(), trackerState.trend());
+        if (collapsedView != null) {
+            collapsedView.setRate(permille, trackerState.rateTier());
+        }
     }
 
-    private void updateFloatingUI() {
-        if (orderHistory.isEmpty()) {
-            floatingARText.setText("0%");
-            floatingARText.setTextColor(0xFFF44336);
+    private void updateFallOffText() {
+        int ordersUntilNextDeclineFallsOff = trackerState.isFull()
+                ? trackerState.ordersUntilNextDeclineFallsOff()
+                : -1;
+        if (ordersUntilNextDeclineFallsOff == shownFallOff) {
             return;
         }
+        shownFallOff = ordersUntilNextDeclineFallsOff;
 
-        int acceptedCount = 0;
-        for (Boolean order : orderHistory) {
-            if (order) {
-                acceptedCount++;
-            }
+        if (ordersUntilNextDeclineFallsOff == -1) {
+            floatingFallOffText.setVisibility(View.GONE);
+            return;
         }
 
-        double acceptanceRate = (acceptedCount * 100.0) / orderHistory.size();
-        floatingARText.setText(String.format("%.1f%%", acceptanceRate));
-
-        if (acceptanceRate < 50) {
-            floatingARText.setTextColor(0xFFF44336);
-        } else if (acceptanceRate < 70) {
-            floatingARText.setTextColor(0xFFFFB300);
+        if (ordersUntilNextDeclineFallsOff == 1) {
+            fallOffBuffer.clear().append("Decline drops next order");
         } else {
-            floatingARText.setTextColor(0xFF4CAF50);
+            fallOffBuffer.clear().append("Decline drops in ").append(ordersUntilNextDeclineFallsOff);
         }
+        floatingFallOffText.setText(fallOffBuffer.chars(), 0, fallOffBuffer.length());
+        floatingFallOffText.setVisibility(View.VISIBLE);
     }
 
-    private void saveOrderHistory() {
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        SharedPreferences.Editor editor = prefs.edit();
-
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < orderHistory.size(); i++) {
-            sb.append(orderHistory.get(i) ? "1" : "0");
-            if (i < orderHistory.size() - 1) {
-                sb.append(",");
+    /**
+     * Projections are built lazily per state, so this only asks for one while
+     * the panel is showing and the state is one it has not been computed for.
+     * Expanding the panel rebinds it.
+     */
+    private void updateProjectionText() {
+        if (currentState != STATE_FLOATING || trackerState.version() == projectedVersion) {
+            return;
+        }
+        projectedVersion = trackerState.version();
+        int nextTarget = -1;
+        int accepts = -1;
+        double acceptanceRate = trackerState.acceptanceRate();
+        for (int target : AcceptanceProjection.DEFAULT_TARGETS) {
+            if (acceptanceRate < target) {
+                nextTarget = target;
+                accepts = trackerState.projection().acceptsToReach(target);
+                break;
             }
         }
+        if (nextTarget == shownProjectionTarget && accepts == shownProjectionAccepts) {
+            return;
+        }
+        shownProjectionTarget = nextTarget;
+        shownProjectionAccepts = accepts;
 
-        editor.putString(KEY_ORDER_HISTORY, sb.toString());
-        editor.apply();
-    }
-
-    private void loadOrderHistory() {
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        String historyString = prefs.getString(KEY_ORDER_HISTORY, "");
-
-        orderHistory.clear();
-
-        if (!historyString.isEmpty()) {
-            String[] parts = historyString.split(",");
-            for (String part : parts) {
-                orderHistory.add(part.equals("1"));
-            }
+        if (nextTarget == -1) {
+            floatingProjectionText.setVisibility(View.GONE);
+            return;
         }
+        projectionBuffer.clear().append('+').append(accepts).append(" to ").append(nextTarget).append('%');
+        floatingProjectionText.setText(projectionBuffer.chars(), 0, projectionBuffer.length());
+        floatingProjectionText.setVisibility(View.VISIBLE);
     }
 
     @Override
@@ -480,19 +537,51 @@ public class FloatingARService extends Service {
 
         stopForeground(true);
 
-        if (collapsedView != null && collapsedView.getParent() != null) {
-            windowManager.removeView(collapsedView);
+        if (trackerEngine != null) {
+            trackerEngine.removeListener(this);
+            trackerEngine.drain();
         }
-        if (floatingView != null && floatingView.getParent() != null) {
-            windowManager.removeView(floatingView);
+
+        if (transitionAnimator != null) {
+            transitionAnimator.cancel();
         }
-        if (customToastView != null && customToastView.getParent() != null) {
-            try {
-                windowManager.removeView(customToastView);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+        if (overlayDrag != null) {
+            overlayDrag.cancel();
+        }
+        if (overlayRoot != null && overlayRoot.getParent() != null) {
+            windowManager.removeView(overlayRoot);
+        }
+        if (overlayToast != null) {
+            overlayToast.release();
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (trackerEngine != null) {
+            trackerEngine.drain();
+        }
+    }
+
+    private void toggleDebugPanel() {
+        if (debugText.getVisibility() == View.VISIBLE) {
+            debugText.setVisibility(View.GONE);
+        } else {
+            debugText.setText(PerfStats.summary());
+            debugText.setVisibility(View.VISIBLE);
+        }
+    }
+
+    /** {@code adb shell dumpsys activity service com.doordashtracker/.FloatingARService} */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        if (args != null && args.length > 0 && "reset".equals(args[0])) {
+            PerfStats.reset();
+            writer.println("Stats reset");
+            return;
         }
+        PerfStats.dump(writer);
     }
 
     @Override
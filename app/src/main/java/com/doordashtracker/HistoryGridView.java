@@ -0,0 +1,219 @@
+package com.doordashtracker;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import com.doordashtracker.core.TrackerState;
+
+/**
+ * Draws the whole order history as a grid of colored cells in a single pass,
+ * newest order first. Replaces a GridLayout holding one child View per order.
+ */
+public class HistoryGridView extends View {
+
+    public interface OnCellClickListener {
+        /** @param index history index of the tapped order, 0 being the oldest */
+        void onCellClick(int index, boolean accepted);
+    }
+
+    private static final int DEFAULT_COLUMNS = 10;
+    private static final int MAX_DEFAULT_COLUMNS_CAPACITY = 100;
+    private static final int ACCEPT_COLOR = 0xFF4CAF50;
+    private static final int DECLINE_COLOR = 0xFFF44336;
+
+    private final Paint acceptPaint = new Paint();
+    private final Paint declinePaint = new Paint();
+    private final int cellMargin;
+
+    private int columns = DEFAULT_COLUMNS;
+    private TrackerState history;
+    private OnCellClickListener cellClickListener;
+
+    private int cellSize;
+    private int cellPitch;
+    private int cellInset;
+    private int gridLeft;
+    private int downCell = -1;
+
+    public HistoryGridView(Context context) {
+        this(context, null);
+    }
+
+    public HistoryGridView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        acceptPaint.setColor(ACCEPT_COLOR);
+        declinePaint.setColor(DECLINE_COLOR);
+        cellMargin = (int) (4 * getResources().getDisplayMetrics().density);
+    }
+
+    public void setOnCellClickListener(OnCellClickListener listener) {
+        cellClickListener = listener;
+    }
+
+    /**
+     * Shows {@code state}. Only the cells whose color differs from what is on
+     * screen are invalidated; the view is re-measured only if the row count changes.
+     */
+    public void setHistory(TrackerState state) {
+        TrackerState previous = history;
+        history = state;
+
+        int newColumns = columnsFor(state.capacity());
+        if (newColumns != columns) {
+            columns = newColumns;
+            updateGeometry(getWidth());
+            previous = null;
+        }
+
+        if (previous == null || rowsFor(previous.size()) != rowsFor(state.size())) {
+            requestLayout();
+            invalidate();
+            return;
+        }
+        if (cellPitch == 0) {
+            return;
+        }
+
+        int cells = Math.max(previous.size(), state.size());
+        int dirtyFirst = -1;
+        int dirtyLast = -1;
+        for (int cell = 0; cell < cells; cell++) {
+            if (cellColor(previous, cell) != cellColor(state, cell)) {
+                if (dirtyFirst < 0) {
+                    dirtyFirst = cell;
+                }
+                dirtyLast = cell;
+            }
+        }
+        if (dirtyFirst < 0) {
+            return;
+        }
+
+        int firstRow = dirtyFirst / columns;
+        int lastRow = dirtyLast / columns;
+        int left = gridLeft;
+        int right = gridLeft + columns * cellPitch;
+        if (firstRow == lastRow) {
+            left = gridLeft + (dirtyFirst % columns) * cellPitch;
+            right = gridLeft + (dirtyLast % columns + 1) * cellPitch;
+        }
+        invalidate(left, getPaddingTop() + firstRow * cellPitch,
+                right, getPaddingTop() + (lastRow + 1) * cellPitch);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int pitch = pitchFor(width);
+        int rows = history == null ? 0 : rowsFor(history.size());
+        int height = getPaddingTop() + rows * pitch + getPaddingBottom();
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        updateGeometry(w);
+    }
+
+    private void updateGeometry(int width) {
+        cellPitch = pitchFor(width);
+        // Dense grids for long windows shrink the gap so cells stay visible.
+        cellInset = Math.min(cellMargin, cellPitch / 8);
+        cellSize = Math.max(0, cellPitch - 2 * cellInset);
+        int contentWidth = width - getPaddingLeft() - getPaddingRight();
+        gridLeft = getPaddingLeft() + (contentWidth - columns * cellPitch) / 2;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (history == null || cellPitch == 0) {
+            return;
+        }
+
+        int size = history.size();
+        int top = getPaddingTop() + cellInset;
+        for (int cell = 0; cell < size; cell++) {
+            int column = cell % columns;
+            int row = cell / columns;
+            float left = gridLeft + column * cellPitch + cellInset;
+            float cellTop = top + row * cellPitch;
+            Paint paint = history.isAccepted(size - 1 - cell) ? acceptPaint : declinePaint;
+            canvas.drawRect(left, cellTop, left + cellSize, cellTop + cellSize, paint);
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (history == null || cellClickListener == null) {
+            return super.onTouchEvent(event);
+        }
+
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                downCell = cellAt(event.getX(), event.getY());
+                return downCell >= 0;
+
+            case MotionEvent.ACTION_UP:
+                int cell = cellAt(event.getX(), event.getY());
+                if (cell >= 0 && cell == downCell) {
+                    performClick();
+                    int index = history.size() - 1 - cell;
+                    cellClickListener.onCellClick(index, history.isAccepted(index));
+                }
+                downCell = -1;
+                return true;
+
+            case MotionEvent.ACTION_CANCEL:
+                downCell = -1;
+                return true;
+        }
+        return downCell >= 0;
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    private int cellAt(float x, float y) {
+        if (cellPitch == 0) {
+            return -1;
+        }
+        int column = (int) Math.floor((x - gridLeft) / cellPitch);
+        int row = (int) Math.floor((y - getPaddingTop()) / cellPitch);
+        if (column < 0 || column >= columns || row < 0) {
+            return -1;
+        }
+        int cell = row * columns + column;
+        return cell < history.size() ? cell : -1;
+    }
+
+    /** Keeps large windows roughly square instead of hundreds of rows tall. */
+    private static int columnsFor(int capacity) {
+        if (capacity <= MAX_DEFAULT_COLUMNS_CAPACITY) {
+            return DEFAULT_COLUMNS;
+        }
+        return (int) Math.ceil(Math.sqrt(capacity));
+    }
+
+    private int pitchFor(int width) {
+        return Math.max(0, (width - getPaddingLeft() - getPaddingRight()) / columns);
+    }
+
+    private int rowsFor(int size) {
+        return (size + columns - 1) / columns;
+    }
+
+    /** Color shown by grid cell {@code cell}, or 0 if that cell is empty. */
+    private static int cellColor(TrackerState state, int cell) {
+        int size = state.size();
+        if (cell >= size) {
+            return 0;
+        }
+        return state.isAccepted(size - 1 - cell) ? ACCEPT_COLOR : DECLINE_COLOR;
+    }
+}
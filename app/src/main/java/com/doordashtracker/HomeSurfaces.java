@@ -0,0 +1,98 @@
+package com.doordashtracker;
+
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.service.quicksettings.TileService;
+import android.widget.RemoteViews;
+import com.doordashtracker.core.EventStore;
+import com.doordashtracker.core.StateSnapshot;
+import com.doordashtracker.core.TextBuffer;
+import com.doordashtracker.core.WindowStats;
+import java.io.File;
+
+/**
+ * Shared plumbing of the home-screen widget and the Quick Settings tile. Both
+ * render only from the saved {@link StateSnapshot} and log decisions through
+ * {@link DecisionReceiver}, which updates the snapshot without loading the
+ * history when the app is not running, so neither keeps anything running.
+ */
+final class HomeSurfaces {
+
+    static final String ACTION_ACCEPT = "com.doordashtracker.action.ACCEPT";
+    static final String ACTION_DECLINE = "com.doordashtracker.action.DECLINE";
+    /** One of the {@code EventStore.SOURCE_} constants. */
+    static final String EXTRA_SOURCE = "com.doordashtracker.extra.SOURCE";
+
+    private HomeSurfaces() {
+    }
+
+    static File snapshotFile(Context context) {
+        return new File(context.getFilesDir(), StateSnapshot.FILE_NAME);
+    }
+
+    static StateSnapshot readSnapshot(Context context) {
+        return StateSnapshot.read(snapshotFile(context));
+    }
+
+    /** Pushes {@code snapshot} to every placed widget and asks the tile to refresh. */
+    static void refresh(Context context, StateSnapshot snapshot) {
+        AppWidgetManager manager = AppWidgetManager.getInstance(context);
+        int[] ids = manager.getAppWidgetIds(new ComponentName(context, TrackerWidgetProvider.class));
+        if (ids.length > 0) {
+            manager.updateAppWidget(ids, buildWidgetViews(context, snapshot));
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            TileService.requestListeningState(context, new ComponentName(context, TrackerTileService.class));
+        }
+    }
+
+    static RemoteViews buildWidgetViews(Context context, StateSnapshot snapshot) {
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_tracker);
+        views.setTextViewText(R.id.widget_rate_text, formatRate(snapshot));
+        views.setTextColor(R.id.widget_rate_text, Tiers.color(snapshot.rateTier()));
+
+        TextBuffer label = new TextBuffer(24);
+        if (snapshot.isEmpty()) {
+            label.append("No orders yet");
+        } else {
+            label.append("Last ").append(snapshot.capacity());
+            if (snapshot.trend() == WindowStats.TREND_UP) {
+                label.append(" ▲");
+            } else if (snapshot.trend() == WindowStats.TREND_DOWN) {
+                label.append(" ▼");
+            }
+        }
+        views.setTextViewText(R.id.widget_label_text, label.toString());
+
+        views.setOnClickPendingIntent(R.id.widget_accept_button,
+                decisionIntent(context, true, EventStore.SOURCE_WIDGET));
+        views.setOnClickPendingIntent(R.id.widget_decline_button,
+                decisionIntent(context, false, EventStore.SOURCE_WIDGET));
+        views.setOnClickPendingIntent(R.id.widget_root, PendingIntent.getActivity(context, 0,
+                new Intent(context, MainActivity.class), PendingIntent.FLAG_IMMUTABLE));
+        return views;
+    }
+
+    /** The rate as shown by the widget and tile, or a placeholder before any order. */
+    static String formatRate(StateSnapshot snapshot) {
+        if (snapshot.isEmpty()) {
+            return "--";
+        }
+        return new TextBuffer(8).appendPercent(snapshot.acceptancePermille()).toString();
+    }
+
+    static Intent decision(Context context, boolean accepted, byte source) {
+        return new Intent(context, DecisionReceiver.class)
+                .setAction(accepted ? ACTION_ACCEPT : ACTION_DECLINE)
+                .putExtra(EXTRA_SOURCE, source);
+    }
+
+    private static PendingIntent decisionIntent(Context context, boolean accepted, byte source) {
+        return PendingIntent.getBroadcast(context, accepted ? 1 : 2, decision(context, accepted, source),
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+}
@@ -0,0 +1,168 @@
+package com.doordashtracker;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import com.doordashtracker.core.AnalyticsCube;
+import java.util.Arrays;
+
+/**
+ * Draws the decline rate for every local hour of the week as a 7 x 24 grid,
+ * Monday at the top, shading each cell from green (all accepted) to red (all
+ * declined). Cell colors are worked out in {@link #setAnalytics} so drawing
+ * only fills rects.
+ */
+public class HourHeatmapView extends View {
+
+    public interface OnCellClickListener {
+        /** @param weekday 0 being Monday */
+        void onCellClick(int weekday, int hour);
+    }
+
+    private static final String[] WEEKDAY_LABELS = {"M", "T", "W", "T", "F", "S", "S"};
+    private static final int EMPTY_COLOR = 0xFF2A2A2A;
+    private static final int ACCEPT_COLOR = 0xFF4CAF50;
+    private static final int DECLINE_COLOR = 0xFFF44336;
+    private static final int LABEL_COLOR = 0xFFCCCCCC;
+    private static final int HOUR_LABEL_STEP = 6;
+
+    private final Paint cellPaint = new Paint();
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final int[] colors = new int[AnalyticsCube.WEEKDAYS * AnalyticsCube.HOURS];
+    private final int[] counts = new int[2];
+    private final float density;
+    private final float labelWidth;
+    private OnCellClickListener cellClickListener;
+
+    private float cellPitch;
+    private float cellInset;
+    private int downCell = -1;
+
+    public HourHeatmapView(Context context) {
+        this(context, null);
+    }
+
+    public HourHeatmapView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        density = getResources().getDisplayMetrics().density;
+        labelPaint.setColor(LABEL_COLOR);
+        labelPaint.setTextSize(11 * getResources().getDisplayMetrics().scaledDensity);
+        labelWidth = labelPaint.measureText("M") + 6 * density;
+        Arrays.fill(colors, EMPTY_COLOR);
+    }
+
+    public void setOnCellClickListener(OnCellClickListener listener) {
+        cellClickListener = listener;
+    }
+
+    public void setAnalytics(AnalyticsCube analytics) {
+        for (int weekday = 0; weekday < AnalyticsCube.WEEKDAYS; weekday++) {
+            for (int hour = 0; hour < AnalyticsCube.HOURS; hour++) {
+                analytics.countHours(weekday, hour, hour + 1, counts);
+                int total = counts[0] + counts[1];
+                colors[weekday * AnalyticsCube.HOURS + hour] =
+                        total == 0 ? EMPTY_COLOR : blend(ACCEPT_COLOR, DECLINE_COLOR, counts[1] / (float) total);
+            }
+        }
+        invalidate();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        float pitch = pitchFor(width);
+        int height = (int) Math.ceil(getPaddingTop() + AnalyticsCube.WEEKDAYS * pitch
+                + labelPaint.getFontSpacing() + getPaddingBottom());
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        cellPitch = pitchFor(w);
+        cellInset = Math.min(density, cellPitch / 8);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (cellPitch == 0) {
+            return;
+        }
+        float left = getPaddingLeft() + labelWidth;
+        float top = getPaddingTop();
+        float cellSize = cellPitch - 2 * cellInset;
+        float baseline = cellPitch / 2 - (labelPaint.ascent() + labelPaint.descent()) / 2;
+        for (int weekday = 0; weekday < AnalyticsCube.WEEKDAYS; weekday++) {
+            float rowTop = top + weekday * cellPitch;
+            canvas.drawText(WEEKDAY_LABELS[weekday], getPaddingLeft(), rowTop + baseline, labelPaint);
+            for (int hour = 0; hour < AnalyticsCube.HOURS; hour++) {
+                cellPaint.setColor(colors[weekday * AnalyticsCube.HOURS + hour]);
+                float cellLeft = left + hour * cellPitch + cellInset;
+                float cellTop = rowTop + cellInset;
+                canvas.drawRect(cellLeft, cellTop, cellLeft + cellSize, cellTop + cellSize, cellPaint);
+            }
+        }
+        float labelTop = top + AnalyticsCube.WEEKDAYS * cellPitch - labelPaint.ascent();
+        for (int hour = 0; hour < AnalyticsCube.HOURS; hour += HOUR_LABEL_STEP) {
+            canvas.drawText(String.valueOf(hour), left + hour * cellPitch + cellInset, labelTop, labelPaint);
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (cellClickListener == null) {
+            return super.onTouchEvent(event);
+        }
+
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                downCell = cellAt(event.getX(), event.getY());
+                return downCell >= 0;
+
+            case MotionEvent.ACTION_UP:
+                int cell = cellAt(event.getX(), event.getY());
+                if (cell >= 0 && cell == downCell) {
+                    performClick();
+                    cellClickListener.onCellClick(cell / AnalyticsCube.HOURS, cell % AnalyticsCube.HOURS);
+                }
+                downCell = -1;
+                return true;
+
+            case MotionEvent.ACTION_CANCEL:
+                downCell = -1;
+                return true;
+        }
+        return downCell >= 0;
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    private int cellAt(float x, float y) {
+        if (cellPitch == 0) {
+            return -1;
+        }
+        int hour = (int) Math.floor((x - getPaddingLeft() - labelWidth) / cellPitch);
+        int weekday = (int) Math.floor((y - getPaddingTop()) / cellPitch);
+        if (hour < 0 || hour >= AnalyticsCube.HOURS || weekday < 0 || weekday >= AnalyticsCube.WEEKDAYS) {
+            return -1;
+        }
+        return weekday * AnalyticsCube.HOURS + hour;
+    }
+
+    private float pitchFor(int width) {
+        return Math.max(0f, (width - getPaddingLeft() - getPaddingRight() - labelWidth) / AnalyticsCube.HOURS);
+    }
+
+    private static int blend(int from, int to, float fraction) {
+        int r = (int) (((from >> 16) & 0xFF) + (((to >> 16) & 0xFF) - ((from >> 16) & 0xFF)) * fraction);
+        int g = (int) (((from >> 8) & 0xFF) + (((to >> 8) & 0xFF) - ((from >> 8) & 0xFF)) * fraction);
+        int b = (int) ((from & 0xFF) + ((to & 0xFF) - (from & 0xFF)) * fraction);
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+}
@@ -2,42 +2,67 @@ package com.doordashtracker;
 
 import android.app.Activity;
 import android.app.AlertDialog;
+import android.content.ComponentName;
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.graphics.Typeface;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.provider.Settings;
-import android.util.DisplayMetrics;
+import android.text.format.DateUtils;
 import android.view.Gravity;
 import android.view.View;
 import android.widget.Button;
-import android.widget.GridLayout;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 import android.widget.Toast;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import com.doordashtracker.core.AcceptanceProjection;
+import com.doordashtracker.core.EventStore;
+import com.doordashtracker.core.PerfStats;
+import com.doordashtracker.core.TextBuffer;
+import com.doordashtracker.core.TrackerState;
+import com.doordashtracker.core.WindowStats;
 
-public class MainActivity extends Activity {
+public class MainActivity extends Activity implements TrackerEngine.Listener {
     
-    private static final int MAX_ORDERS = 100;
-    private static final String PREFS_NAME = "DoordashTrackerPrefs";
-    private static final String KEY_ORDER_HISTORY = "orderHistory";
-    private static final int GRID_COLUMNS = 10;
+    private static final int NEXT_FIVE_ROWS = 5;
+    private static final int ROW_HIDDEN = -1;
+    private static final int ROW_DECLINE = 0;
+    private static final int ROW_ACCEPT = 1;
     private static final int OVERLAY_PERMISSION_REQUEST_CODE = 1001;
     
-    private List<Boolean> orderHistory;
+    private TrackerEngine trackerEngine;
+    private TrackerState trackerState;
+    private final TextBuffer rateBuffer = new TextBuffer(8);
+    private final TextBuffer comparisonBuffer = new TextBuffer(160);
+    private final TextBuffer streakBuffer = new TextBuffer(160);
     private TextView acceptanceRateText;
+    private TextView acceptanceRateLabel;
+    private TextView windowComparisonText;
+    private TextView streakText;
     private TextView ordersNeededText;
+    private TextView projectionText;
     private TextView totalOrdersText;
     private TextView acceptedCountText;
     private TextView declinedCountText;
     private LinearLayout nextFiveContainer;
+    private LinearLayout nextFivePanel;
+    private LinearLayout fullHistoryPanel;
+    private TextView nextFiveEmptyText;
+    private TextView fullHistoryEmptyText;
+    private final View[] nextFiveRows = new View[NEXT_FIVE_ROWS];
+    private final View[] nextFiveIndicators = new View[NEXT_FIVE_ROWS];
+    private final TextView[] nextFiveStatuses = new TextView[NEXT_FIVE_ROWS];
+    private final int[] nextFiveBound = new int[NEXT_FIVE_ROWS];
+    private HistoryGridView historyGridView;
     private Button resetButton;
     private Button floatingModeButton;
+    private Button statsButton;
+    private Button captureButton;
     private boolean showingFullHistory = false;
     
     @Override
@@ -45,17 +70,24 @@ public class MainActivity extends Activity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
         
-        orderHistory = new ArrayList<>();
-        loadOrderHistory();
+        trackerEngine = TrackerEngine.getInstance(this);
         
         acceptanceRateText = findViewById(R.id.acceptance_rate_text);
+        acceptanceRateLabel = findViewById(R.id.acceptance_rate_label);
+        windowComparisonText = findViewById(R.id.window_comparison_text);
+        streakText = findViewById(R.id.streak_text);
         ordersNeededText = findViewById(R.id.orders_needed_text);
+        projectionText = findViewById(R.id.projection_text);
         totalOrdersText = findViewById(R.id.total_orders_text);
         acceptedCountText = findViewById(R.id.accepted_count_text);
         declinedCountText = findViewById(R.id.declined_count_text);
         nextFiveContainer = findViewById(R.id.next_five_container);
         resetButton = findViewById(R.id.reset_button);
         floatingModeButton = findViewById(R.id.floating_mode_button);
+        statsButton = findViewById(R.id.stats_button);
+        captureButton = findViewById(R.id.capture_button);
+        
+        buildHistoryPanels();
         
         Button acceptButton = findViewById(R.id.accept_button);
         Button declineButton = findViewById(R.id.decline_button);
@@ -88,6 +120,22 @@ public class MainActivity extends Activity {
             }
         });
         
+        statsButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                startActivity(new Intent(MainActivity.this, StatsActivity.class));
+            }
+        });
+        
+        // Capture is turned on and off by the user in the system's
+        // Accessibility settings; the app can only send them there.
+        captureButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                startActivity(new Intent(Settings.ACTION_ACCESSIBILITY_SETTINGS));
+            }
+        });
+        
         nextFiveContainer.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
@@ -95,13 +143,58 @@ public class MainActivity extends Activity {
             }
         });
         
-        updateUI();
+        acceptanceRateText.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                showWindowSizeDialog();
+                return true;
+            }
+        });
     }
     
     @Override
     protected void onResume() {
         super.onResume();
-        loadOrderHistory();
+        trackerEngine.addListener(this);
+        captureButton.setText(isCaptureEnabled() ? "AUTO CAPTURE: ON" : "AUTO CAPTURE: OFF");
+    }
+    
+    private boolean isCaptureEnabled() {
+        String enabled = Settings.Secure.getString(getContentResolver(),
+                Settings.Secure.ENABLED_ACCESSIBILITY_SERVICES);
+        if (enabled == null) {
+            return false;
+        }
+        String service = new ComponentName(this, OfferCaptureService.class).flattenToString();
+        for (String name : enabled.split(":")) {
+            if (name.equalsIgnoreCase(service)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    @Override
+    protected void onPause() {
+        super.onPause();
+        trackerEngine.removeListener(this);
+    }
+    
+    @Override
+    protected void onStop() {
+        super.onStop();
+        trackerEngine.drain();
+    }
+    
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        trackerEngine.drain();
+    }
+    
+    @Override
+    public void onTrackerStateChanged(TrackerState state) {
+        trackerState = state;
         updateUI();
     }
 
@@ -117,6 +210,7 @@ public class MainActivity extends Activity {
         }
 
         Intent serviceIntent = new Intent(this, FloatingARService.class);
+        serviceIntent.putExtra(FloatingARService.EXTRA_START_UPTIME, SystemClock.uptimeMillis());
         
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             startForegroundService(serviceIntent);
@@ -146,7 +240,7 @@ public class MainActivity extends Activity {
     private void showResetConfirmation() {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle("Reset History");
-        builder.setMessage("Are you sure you want to clear all order history? This action cannot be undone.");
+        builder.setMessage("Restart the rate windows from zero? Past decisions stay in your statistics.");
         
         builder.setPositiveButton("Reset", new DialogInterface.OnClickListener() {
             @Override
@@ -166,277 +260,406 @@ public class MainActivity extends Activity {
         dialog.show();
     }
     
+    private void showWindowSizeDialog() {
+        if (!trackerEngine.isLoaded()) {
+            return;
+        }
+        final int[] presets = TrackerEngine.PRESET_WINDOW_SIZES;
+        int[] current = trackerEngine.getWindowSizes();
+        String[] labels = new String[presets.length];
+        final boolean[] checked = new boolean[presets.length];
+        
+        for (int i = 0; i < presets.length; i++) {
+            labels[i] = "Last " + presets[i] + " orders";
+            for (int size : current) {
+                if (size == presets[i]) {
+                    checked[i] = true;
+                }
+            }
+        }
+        
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Tracked Windows (smallest is the main rate)");
+        builder.setMultiChoiceItems(labels, checked, new DialogInterface.OnMultiChoiceClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which, boolean isChecked) {
+                checked[which] = isChecked;
+            }
+        });
+        
+        builder.setPositiveButton("Apply", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                int count = 0;
+                int[] selected = new int[presets.length];
+                for (int i = 0; i < presets.length; i++) {
+                    if (checked[i]) {
+                        selected[count++] = presets[i];
+                    }
+                }
+                if (count == 0) {
+                    Toast.makeText(MainActivity.this, "Select at least one window", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                trackerEngine.setWindowSizes(Arrays.copyOf(selected, count));
+            }
+        });
+        
+        builder.setNegativeButton("Cancel", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                dialog.dismiss();
+            }
+        });
+        
+        builder.create().show();
+    }
+    
     private void toggleHistoryView() {
         showingFullHistory = !showingFullHistory;
-        
-        if (showingFullHistory) {
-            updateFullHistoryDisplay();
-        } else {
-            updateNextFiveDisplay();
-        }
+        updateHistoryPanels();
     }
     
     private void addOrder(boolean accepted) {
-        if (orderHistory.size() >= MAX_ORDERS) {
-            orderHistory.remove(0);
-        }
-        
-        orderHistory.add(accepted);
-        saveOrderHistory();
-        updateUI();
+        trackerEngine.addOrder(accepted, EventStore.SOURCE_APP);
         
         String message = accepted ? "✓ Accepted" : "✗ Declined";
         Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
     }
     
     private void resetHistory() {
-        orderHistory.clear();
-        saveOrderHistory();
         showingFullHistory = false;
-        updateUI();
-        Toast.makeText(this, "History cleared", Toast.LENGTH_SHORT).show();
+        trackerEngine.reset();
+        Toast.makeText(this, "Rate windows restarted", Toast.LENGTH_SHORT).show();
     }
     
     private void updateUI() {
-        if (orderHistory.isEmpty()) {
+        Trace.beginSection("MainActivity.updateUI");
+        long startNanos = System.nanoTime();
+        try {
+            bindState();
+        } finally {
+            PerfStats.ACTIVITY_UPDATE.recordSince(startNanos);
+            Trace.endSection();
+        }
+    }
+    
+    private void bindState() {
+        acceptanceRateLabel.setText("Acceptance Rate · Last " + trackerState.capacity());
+        updateWindowComparisonText();
+        updateStreakText();
+        
+        if (trackerState.isEmpty()) {
             acceptanceRateText.setText("0%");
-            acceptanceRateText.setTextColor(0xFFF44336);
+            acceptanceRateText.setTextColor(Tiers.color(TrackerState.TIER_LOW));
             ordersNeededText.setText("No orders tracked yet");
             totalOrdersText.setText("Total: 0");
             acceptedCountText.setText("Accepted: 0");
             declinedCountText.setText("Declined: 0");
-            updateNextFiveDisplay();
+            projectionText.setVisibility(View.GONE);
+            updateHistoryPanels();
             return;
         }
         
-        int acceptedCount = 0;
-        int declinedCount = 0;
-        
-        for (Boolean order : orderHistory) {
-            if (order) {
-                acceptedCount++;
-            } else {
-                declinedCount++;
-            }
-        }
-        
-        int totalOrders = orderHistory.size();
-        double acceptanceRate = (acceptedCount * 100.0) / totalOrders;
+        int acceptedCount = trackerState.acceptedCount();
+        int declinedCount = trackerState.declinedCount();
+        int totalOrders = trackerState.size();
         
-        acceptanceRateText.setText(String.format("%.1f%%", acceptanceRate));
+        rateBuffer.clear().appendPercent(trackerState.acceptancePermille());
+        acceptanceRateText.setText(rateBuffer.chars(), 0, rateBuffer.length());
         
-        if (acceptanceRate < 50) {
-            acceptanceRateText.setTextColor(0xFFF44336);
-        } else if (acceptanceRate < 70) {
-            acceptanceRateText.setTextColor(0xFFFFB300);
-        } else {
-            acceptanceRateText.setTextColor(0xFF4CAF50);
-        }
+        acceptanceRateText.setTextColor(Tiers.color(trackerState.rateTier()));
         
         totalOrdersText.setText("Total: " + totalOrders);
         acceptedCountText.setText("Accepted: " + acceptedCount);
         declinedCountText.setText("Declined: " + declinedCount);
         
-        int ordersUntilNextDeclineFallsOff = calculateOrdersUntilNextDeclineFallsOff();
+        int ordersUntilNextDeclineFallsOff = trackerState.ordersUntilNextDeclineFallsOff();
         
         if (declinedCount == 0) {
             ordersNeededText.setText("Perfect! No declines in your history");
-        } else if (ordersUntilNextDeclineFallsOff == -1) {
+        } else if (!trackerState.isFull()) {
             ordersNeededText.setText("Track more orders to see when declines fall off");
+        } else if (declinedCount > 1) {
+            ordersNeededText.setText(describeFallOffSchedule(declinedCount));
         } else if (ordersUntilNextDeclineFallsOff == 1) {
             ordersNeededText.setText("Next decline will fall off with your next order!");
         } else {
             ordersNeededText.setText("Next decline falls off in " + ordersUntilNextDeclineFallsOff + " orders");
         }
         
-        if (showingFullHistory) {
-            updateFullHistoryDisplay();
-        } else {
-            updateNextFiveDisplay();
-        }
+        updateProjectionText();
+        updateHistoryPanels();
     }
     
-    private int calculateOrdersUntilNextDeclineFallsOff() {
-        if (orderHistory.size() < MAX_ORDERS) {
-            return -1;
+    private void updateWindowComparisonText() {
+        int count = trackerState.comparisonCount();
+        if (count == 0 && !trackerState.hasTimeWindow()) {
+            windowComparisonText.setVisibility(View.GONE);
+            return;
         }
         
-        int firstDeclineIndex = -1;
-        for (int i = 0; i < orderHistory.size(); i++) {
-            if (!orderHistory.get(i)) {
-                firstDeclineIndex = i;
-                break;
+        TextBuffer sb = comparisonBuffer.clear();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append("  ·  ");
+            }
+            sb.append("Last ").append(trackerState.comparisonCapacity(i)).append(": ");
+            if (trackerState.comparisonSize(i) == 0) {
+                sb.append("—");
+            } else {
+                sb.appendPercent(trackerState.comparisonAcceptancePermille(i));
             }
         }
-        
-        if (firstDeclineIndex == -1) {
-            return -1;
+        if (trackerState.hasTimeWindow()) {
+            if (count > 0) {
+                sb.append("  ·  ");
+            }
+            sb.append("Last ").append((int) (trackerState.timeWindowMillis() / DateUtils.DAY_IN_MILLIS))
+                    .append(" days: ");
+            if (trackerState.timeWindowSize() == 0) {
+                sb.append("—");
+            } else {
+                sb.appendPercent(trackerState.timeWindowAcceptancePermille());
+            }
+        }
+        windowComparisonText.setText(sb.chars(), 0, sb.length());
+        windowComparisonText.setVisibility(View.VISIBLE);
+    }
+    
+    private void updateStreakText() {
+        int streak = trackerState.currentStreak();
+        if (!trackerState.hasStats() || streak == 0) {
+            streakText.setVisibility(View.GONE);
+            return;
         }
         
-        return firstDeclineIndex + 1;
+        int length = Math.abs(streak);
+        TextBuffer sb = streakBuffer.clear().append("Streak: ").append(length)
+                .append(streak > 0 ? (length == 1 ? " accept" : " accepts") : (length == 1 ? " decline" : " declines"));
+        if (trackerState.trend() == WindowStats.TREND_UP) {
+            sb.append(" ▲");
+        } else if (trackerState.trend() == WindowStats.TREND_DOWN) {
+            sb.append(" ▼");
+        }
+        sb.append("  ·  Best: ").append(trackerState.longestAcceptStreak())
+                .append(" accepted, ").append(trackerState.longestDeclineStreak()).append(" declined");
+        String separator = "\n";
+        for (int i = 0; i < WindowStats.CHANGE_SPANS.length; i++) {
+            if (!trackerState.hasRateChange(i)) {
+                continue;
+            }
+            int change = trackerState.rateChangePermille(i);
+            sb.append(separator).append("Last ").append(WindowStats.CHANGE_SPANS[i]).append(": ");
+            if (change >= 0) {
+                sb.append('+');
+            }
+            sb.appendPercent(change);
+            separator = "  ·  ";
+        }
+        streakText.setText(sb.chars(), 0, sb.length());
+        streakText.setVisibility(View.VISIBLE);
     }
     
-    private void updateNextFiveDisplay() {
-        nextFiveContainer.removeAllViews();
+    private void updateProjectionText() {
+        AcceptanceProjection projection = trackerState.projection();
+        double acceptanceRate = trackerState.acceptanceRate();
+        StringBuilder sb = new StringBuilder();
+        int metTarget = -1;
         
-        TextView headerText = new TextView(this);
-        headerText.setText("Next 5 Orders to Fall Off (Tap to switch)");
-        headerText.setGravity(Gravity.CENTER);
-        headerText.setTextColor(0xFFFFFFFF);
-        headerText.setTextSize(16);
-        headerText.setTypeface(null, Typeface.BOLD);
-        headerText.setPadding(0, 0, 0, 24);
-        nextFiveContainer.addView(headerText);
+        for (int target : AcceptanceProjection.DEFAULT_TARGETS) {
+            if (acceptanceRate >= target) {
+                metTarget = target;
+                continue;
+            }
+            int accepts = projection.acceptsToReach(target);
+            if (sb.length() > 0) {
+                sb.append("  ·  ");
+            }
+            sb.append(target).append("% in ").append(accepts).append(accepts == 1 ? " accept" : " accepts");
+        }
         
-        int itemsToShow = Math.min(5, orderHistory.size());
+        if (metTarget != -1) {
+            int declines = projection.affordableDeclines(metTarget);
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            if (declines == AcceptanceProjection.UNLIMITED) {
+                sb.append("Declines can't take you below ").append(metTarget).append('%');
+            } else if (declines == 0) {
+                sb.append("Your next decline drops you below ").append(metTarget).append('%');
+            } else {
+                sb.append("You can decline ").append(declines)
+                        .append(" in a row and stay at ").append(metTarget).append('%');
+            }
+        }
         
-        if (itemsToShow == 0) {
-            TextView emptyText = new TextView(this);
-            emptyText.setText("No orders to display");
-            emptyText.setTextColor(0xFF888888);
-            emptyText.setTextSize(14);
-            emptyText.setPadding(20, 20, 20, 20);
-            nextFiveContainer.addView(emptyText);
-            return;
+        projectionText.setText(sb);
+        projectionText.setVisibility(sb.length() > 0 ? View.VISIBLE : View.GONE);
+    }
+    
+    private String describeFallOffSchedule(int declinedCount) {
+        int shown = Math.min(TrackerState.SHOWN_DECLINES, declinedCount);
+        StringBuilder sb = new StringBuilder("Declines fall off in ");
+        for (int n = 0; n < shown; n++) {
+            if (n > 0) {
+                sb.append(n == shown - 1 && shown == declinedCount ? " and " : ", ");
+            }
+            sb.append(trackerState.ordersUntilDeclineFallsOff(n));
+        }
+        if (shown < declinedCount) {
+            sb.append(", …");
         }
+        sb.append(" orders");
+        return sb.toString();
+    }
+    
+    private void buildHistoryPanels() {
+        nextFivePanel = createHistoryPanel("Next 5 Orders to Fall Off (Tap to switch)");
+        nextFiveEmptyText = createEmptyText();
+        nextFivePanel.addView(nextFiveEmptyText);
         
-        for (int i = 0; i < itemsToShow; i++) {
-            View orderItem = getLayoutInflater().inflate(R.layout.order_item, nextFiveContainer, false);
+        for (int i = 0; i < NEXT_FIVE_ROWS; i++) {
+            View orderItem = getLayoutInflater().inflate(R.layout.order_item, nextFivePanel, false);
             
             TextView orderNumber = orderItem.findViewById(R.id.order_number);
-            View orderIndicator = orderItem.findViewById(R.id.order_indicator);
-            TextView orderStatus = orderItem.findViewById(R.id.order_status);
-            
-            boolean isAccepted = orderHistory.get(i);
-            
             orderNumber.setText(String.valueOf(i + 1));
             
-            if (isAccepted) {
-                orderIndicator.setBackgroundColor(0xFF4CAF50);
-                orderStatus.setText("Accept");
-                orderStatus.setTextColor(0xFF4CAF50);
-            } else {
-                orderIndicator.setBackgroundColor(0xFFF44336);
-                orderStatus.setText("Decline");
-                orderStatus.setTextColor(0xFFF44336);
-            }
-            
-            nextFiveContainer.addView(orderItem);
+            nextFiveRows[i] = orderItem;
+            nextFiveIndicators[i] = orderItem.findViewById(R.id.order_indicator);
+            nextFiveStatuses[i] = orderItem.findViewById(R.id.order_status);
+            nextFiveBound[i] = ROW_HIDDEN;
+            orderItem.setVisibility(View.GONE);
+            nextFivePanel.addView(orderItem);
         }
-    }
-    
-    private int calculateCellSize() {
-        DisplayMetrics displayMetrics = new DisplayMetrics();
-        getWindowManager().getDefaultDisplay().getMetrics(displayMetrics);
-        int screenWidth = displayMetrics.widthPixels;
         
-        int horizontalPadding = (int) (72 * displayMetrics.density);
-        int availableWidth = screenWidth - horizontalPadding;
+        fullHistoryPanel = createHistoryPanel("Full Order History (Tap to switch)");
+        fullHistoryEmptyText = createEmptyText();
+        fullHistoryPanel.addView(fullHistoryEmptyText);
         
-        int totalMargins = (GRID_COLUMNS + 1) * (int) (8 * displayMetrics.density);
-        int widthForCells = availableWidth - totalMargins;
+        historyGridView = new HistoryGridView(this);
+        historyGridView.setLayoutParams(new LinearLayout.LayoutParams(
+            LinearLayout.LayoutParams.MATCH_PARENT,
+            LinearLayout.LayoutParams.WRAP_CONTENT
+        ));
+        historyGridView.setOnCellClickListener(new HistoryGridView.OnCellClickListener() {
+            @Override
+            public void onCellClick(int index, boolean accepted) {
+                showOrderDetails(index, accepted);
+            }
+        });
+        fullHistoryPanel.addView(historyGridView);
         
-        int cellSize = widthForCells / GRID_COLUMNS;
+        TextView legendText = new TextView(this);
+        legendText.setText("\n🟢 Green = Accept  |  🔴 Red = Decline");
+        legendText.setTextColor(0xFFCCCCCC);
+        legendText.setTextSize(12);
+        legendText.setPadding(0, 24, 0, 0);
+        legendText.setGravity(Gravity.CENTER);
+        fullHistoryPanel.addView(legendText);
         
-        return cellSize;
+        fullHistoryPanel.setVisibility(View.GONE);
+        nextFiveContainer.addView(nextFivePanel);
+        nextFiveContainer.addView(fullHistoryPanel);
     }
     
-    private void updateFullHistoryDisplay() {
-        nextFiveContainer.removeAllViews();
+    private LinearLayout createHistoryPanel(String title) {
+        LinearLayout panel = new LinearLayout(this);
+        panel.setOrientation(LinearLayout.VERTICAL);
+        panel.setLayoutParams(new LinearLayout.LayoutParams(
+            LinearLayout.LayoutParams.MATCH_PARENT,
+            LinearLayout.LayoutParams.WRAP_CONTENT
+        ));
         
         TextView headerText = new TextView(this);
-        headerText.setText("Full Order History (Tap to switch)");
+        headerText.setText(title);
         headerText.setGravity(Gravity.CENTER);
         headerText.setTextColor(0xFFFFFFFF);
         headerText.setTextSize(16);
         headerText.setTypeface(null, Typeface.BOLD);
         headerText.setPadding(0, 0, 0, 24);
-        nextFiveContainer.addView(headerText);
-        
-        if (orderHistory.isEmpty()) {
-            TextView emptyText = new TextView(this);
-            emptyText.setText("No orders to display");
-            emptyText.setTextColor(0xFF888888);
-            emptyText.setTextSize(14);
-            emptyText.setPadding(20, 20, 20, 20);
-            nextFiveContainer.addView(emptyText);
+        panel.addView(headerText);
+        return panel;
+    }
+    
+    private TextView createEmptyText() {
+        TextView emptyText = new TextView(this);
+        emptyText.setText("No orders to display");
+        emptyText.setTextColor(0xFF888888);
+        emptyText.setTextSize(14);
+        emptyText.setPadding(20, 20, 20, 20);
+        return emptyText;
+    }
+    
+    private void updateHistoryPanels() {
+        if (trackerState == null) {
+            // The toggle can be tapped before the first state is published.
             return;
         }
+        setVisible(nextFivePanel, !showingFullHistory);
+        setVisible(fullHistoryPanel, showingFullHistory);
         
-        int cellSize = calculateCellSize();
-        
-        DisplayMetrics displayMetrics = new DisplayMetrics();
-        getWindowManager().getDefaultDisplay().getMetrics(displayMetrics);
-        int marginSize = (int) (4 * displayMetrics.density);
-        
-        GridLayout gridLayout = new GridLayout(this);
-        gridLayout.setColumnCount(GRID_COLUMNS);
-        gridLayout.setRowCount((int) Math.ceil(orderHistory.size() / (double) GRID_COLUMNS));
-        
-        LinearLayout.LayoutParams params = new LinearLayout.LayoutParams(
-            LinearLayout.LayoutParams.MATCH_PARENT,
-            LinearLayout.LayoutParams.WRAP_CONTENT
-        );
-        gridLayout.setLayoutParams(params);
+        if (showingFullHistory) {
+            updateFullHistoryDisplay();
+        } else {
+            updateNextFiveDisplay();
+        }
+    }
+    
+    private void updateNextFiveDisplay() {
+        int itemsToShow = Math.min(NEXT_FIVE_ROWS, trackerState.size());
+        setVisible(nextFiveEmptyText, itemsToShow == 0);
         
-        for (int i = orderHistory.size() - 1; i >= 0; i--) {
-            boolean isAccepted = orderHistory.get(i);
-            
-            View cellView = new View(this);
+        for (int i = 0; i < NEXT_FIVE_ROWS; i++) {
+            int rowState = ROW_HIDDEN;
+            if (i < itemsToShow) {
+                rowState = trackerState.isAccepted(i) ? ROW_ACCEPT : ROW_DECLINE;
+            }
+            if (rowState == nextFiveBound[i]) {
+                continue;
+            }
+            nextFiveBound[i] = rowState;
             
-            GridLayout.LayoutParams cellParams = new GridLayout.LayoutParams();
-            cellParams.width = cellSize;
-            cellParams.height = cellSize;
-            cellParams.setMargins(marginSize, marginSize, marginSize, marginSize);
-            cellView.setLayoutParams(cellParams);
+            if (rowState == ROW_HIDDEN) {
+                nextFiveRows[i].setVisibility(View.GONE);
+                continue;
+            }
             
-            if (isAccepted) {
-                cellView.setBackgroundColor(0xFF4CAF50);
+            if (rowState == ROW_ACCEPT) {
+                nextFiveIndicators[i].setBackgroundColor(0xFF4CAF50);
+                nextFiveStatuses[i].setText("Accept");
+                nextFiveStatuses[i].setTextColor(0xFF4CAF50);
             } else {
-                cellView.setBackgroundColor(0xFFF44336);
+                nextFiveIndicators[i].setBackgroundColor(0xFFF44336);
+                nextFiveStatuses[i].setText("Decline");
+                nextFiveStatuses[i].setTextColor(0xFFF44336);
             }
-            
-            gridLayout.addView(cellView);
+            nextFiveRows[i].setVisibility(View.VISIBLE);
         }
-        
-        nextFiveContainer.addView(gridLayout);
-        
-        TextView legendText = new TextView(this);
-        legendText.setText("\n🟢 Green = Accept  |  🔴 Red = Decline");
-        legendText.setTextColor(0xFFCCCCCC);
-        legendText.setTextSize(12);
-        legendText.setPadding(0, 24, 0, 0);
-        legendText.setGravity(android.view.Gravity.CENTER);
-        nextFiveContainer.addView(legendText);
     }
     
-    private void saveOrderHistory() {
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        SharedPreferences.Editor editor = prefs.edit();
-        
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < orderHistory.size(); i++) {
-            sb.append(orderHistory.get(i) ? "1" : "0");
-            if (i < orderHistory.size() - 1) {
-                sb.append(",");
-            }
+    private void updateFullHistoryDisplay() {
+        boolean empty = trackerState.isEmpty();
+        setVisible(fullHistoryEmptyText, empty);
+        setVisible(historyGridView, !empty);
+        historyGridView.setHistory(trackerState);
+    }
+    
+    private static void setVisible(View view, boolean visible) {
+        int visibility = visible ? View.VISIBLE : View.GONE;
+        if (view.getVisibility() != visibility) {
+            view.setVisibility(visibility);
         }
-        
-        editor.putString(KEY_ORDER_HISTORY, sb.toString());
-        editor.apply();
     }
     
-    private void loadOrderHistory() {
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        String historyString = prefs.getString(KEY_ORDER_HISTORY, "");
-        
-        orderHistory.clear();
-        
-        if (!historyString.isEmpty()) {
-            String[] parts = historyString.split(",");
-            for (String part : parts) {
-                orderHistory.add(part.equals("1"));
-            }
+    private void showOrderDetails(int index, boolean accepted) {
+        String status = accepted ? "Accepted" : "Declined";
+        String message = "Order " + (index + 1) + " of " + trackerState.size() + ": " + status;
+        if (trackerState.isFull()) {
+            message += index == 0
+                    ? " (falls off with your next order)"
+                    : " (falls off in " + (index + 1) + " orders)";
         }
+        Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,147 @@
+package com.doordashtracker;
+
+import android.accessibilityservice.AccessibilityService;
+import android.os.Build;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+import com.doordashtracker.core.EventStore;
+import com.doordashtracker.core.OfferCapture;
+
+/**
+ * Logs offers accepted or declined in the Dasher app without a tap on the
+ * overlay. Off until the user turns it on under Accessibility settings. The
+ * service config already limits delivery to the Dasher app and the event types
+ * {@link OfferCapture} looks at; everything else is decided there.
+ */
+public class OfferCaptureService extends AccessibilityService {
+
+    private final OfferCapture capture = new OfferCapture();
+    private final EventAdapter eventAdapter = new EventAdapter();
+    private TrackerEngine trackerEngine;
+
+    @Override
+    protected void onServiceConnected() {
+        super.onServiceConnected();
+        trackerEngine = TrackerEngine.getInstance(this);
+        capture.reset();
+    }
+
+    @Override
+    public void onAccessibilityEvent(AccessibilityEvent event) {
+        if (!OfferCapture.accepts(event.getPackageName(), event.getEventType())) {
+            return;
+        }
+        eventAdapter.event = event;
+        int decision;
+        try {
+            decision = capture.onEvent(eventAdapter);
+        } finally {
+            eventAdapter.event = null;
+        }
+        if (decision != OfferCapture.DECISION_NONE) {
+            trackerEngine.addOrder(decision == OfferCapture.DECISION_ACCEPT, EventStore.SOURCE_CAPTURE);
+        }
+    }
+
+    @Override
+    public void onInterrupt() {
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (trackerEngine != null) {
+            trackerEngine.drain();
+        }
+    }
+
+    /** Reused for every event, so the filter adds no objects of its own. */
+    private final class EventAdapter implements OfferCapture.Event {
+
+        AccessibilityEvent event;
+        private final NodeAdapter sourceNode = new NodeAdapter();
+        private final NodeAdapter rootNode = new NodeAdapter();
+
+        @Override
+        public CharSequence packageName() {
+            return event.getPackageName();
+        }
+
+        @Override
+        public int type() {
+            return event.getEventType();
+        }
+
+        @Override
+        public long timeMillis() {
+            return event.getEventTime();
+        }
+
+        @Override
+        public int textCount() {
+            return event.getText().size();
+        }
+
+        @Override
+        public CharSequence text(int index) {
+            return event.getText().get(index);
+        }
+
+        @Override
+        public OfferCapture.Node source() {
+            return sourceNode.wrap(event.getSource());
+        }
+
+        @Override
+        public OfferCapture.Node windowRoot() {
+            return rootNode.wrap(getRootInActiveWindow());
+        }
+    }
+
+    /**
+     * Holds one node of the current traversal path. A scan recycles a node
+     * before fetching its next sibling, so one adapter per depth is enough.
+     */
+    private static final class NodeAdapter implements OfferCapture.Node {
+
+        private AccessibilityNodeInfo info;
+        private NodeAdapter childAdapter;
+
+        NodeAdapter wrap(AccessibilityNodeInfo node) {
+            if (node == null) {
+                return null;
+            }
+            info = node;
+            return this;
+        }
+
+        @Override
+        public CharSequence label() {
+            CharSequence text = info.getText();
+            return text != null ? text : info.getContentDescription();
+        }
+
+        @Override
+        public int childCount() {
+            return info.getChildCount();
+        }
+
+        @Override
+        public OfferCapture.Node child(int index) {
+            if (childAdapter == null) {
+                childAdapter = new NodeAdapter();
+            }
+            return childAdapter.wrap(info.getChild(index));
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void recycle() {
+            // Nodes are no longer pooled from API 33, where recycle() does nothing.
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU) {
+                info.recycle();
+            }
+            info = null;
+        }
+    }
+}
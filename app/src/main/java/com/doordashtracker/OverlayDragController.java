@@ -0,0 +1,259 @@
+package com.doordashtracker;
+
+import android.util.DisplayMetrics;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.WindowManager;
+import com.doordashtracker.core.PerfStats;
+
+/**
+ * Drags an overlay window. Touch moves only record the target position; the
+ * window is moved from a Choreographer callback, so at most one
+ * updateViewLayout is issued per vsync however fast the panel reports touches.
+ * A gesture becomes a drag as soon as it passes the touch slop, and anything
+ * shorter is delivered to the touched view as a click. One controller can
+ * serve several drag handles inside the same window. With snap enabled,
+ * releasing a drag flings the window to the nearest screen edge.
+ * <p>
+ * Frames that arrive late while dragging or flinging are counted in
+ * {@link PerfStats}, so the smoothness of a drag can be checked on a real device.
+ */
+class OverlayDragController implements View.OnTouchListener, Choreographer.FrameCallback {
+
+    private static final long FLING_DURATION_NANOS = 250_000_000L;
+    /** How far ahead (in seconds of release velocity) the fling projects the landing point. */
+    private static final float FLING_PROJECTION_SECONDS = 0.2f;
+
+    private final WindowManager windowManager;
+    private final View window;
+    private final WindowManager.LayoutParams params;
+    private boolean snapToEdge;
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final int touchSlop;
+    private final int minimumFlingVelocity;
+    private final long frameIntervalNanos;
+
+    private VelocityTracker velocityTracker;
+    private float downRawX;
+    private float downRawY;
+    private int downX;
+    private int downY;
+    private boolean dragging;
+
+    private int targetX;
+    private int targetY;
+    private boolean frameScheduled;
+
+    private boolean flinging;
+    private long flingStartNanos;
+    private int flingFromX;
+    private int flingFromY;
+    private int flingToX;
+    private int flingToY;
+
+    private long lastFrameNanos;
+    private int gestureFrames;
+    private int gestureDroppedFrames;
+
+    OverlayDragController(WindowManager windowManager, View window, WindowManager.LayoutParams params) {
+        this.windowManager = windowManager;
+        this.window = window;
+        this.params = params;
+
+        ViewConfiguration configuration = ViewConfiguration.get(window.getContext());
+        touchSlop = configuration.getScaledTouchSlop();
+        minimumFlingVelocity = configuration.getScaledMinimumFlingVelocity();
+
+        float refreshRate = windowManager.getDefaultDisplay().getRefreshRate();
+        frameIntervalNanos = (long) (1_000_000_000L / (refreshRate > 0 ? refreshRate : 60f));
+    }
+
+    @Override
+    public boolean onTouch(View v, MotionEvent event) {
+        if (velocityTracker == null) {
+            velocityTracker = VelocityTracker.obtain();
+        }
+        velocityTracker.addMovement(event);
+
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                stopFling();
+                downX = params.x;
+                downY = params.y;
+                targetX = downX;
+                targetY = downY;
+                downRawX = event.getRawX();
+                downRawY = event.getRawY();
+                dragging = false;
+                return true;
+
+            case MotionEvent.ACTION_MOVE:
+                float dx = event.getRawX() - downRawX;
+                float dy = event.getRawY() - downRawY;
+                if (!dragging && dx * dx + dy * dy > touchSlop * touchSlop) {
+                    dragging = true;
+                    beginMeasuring();
+                }
+                if (dragging) {
+                    moveTo(downX + (int) dx, downY + (int) dy);
+                }
+                return true;
+
+            case MotionEvent.ACTION_UP:
+                if (dragging) {
+                    velocityTracker.computeCurrentVelocity(1000);
+                    release(velocityTracker.getXVelocity(), velocityTracker.getYVelocity());
+                } else {
+                    v.performClick();
+                }
+                recycleVelocityTracker();
+                return true;
+
+            case MotionEvent.ACTION_CANCEL:
+                if (dragging) {
+                    release(0f, 0f);
+                }
+                recycleVelocityTracker();
+                return true;
+        }
+        return false;
+    }
+
+    void setSnapToEdge(boolean snapToEdge) {
+        this.snapToEdge = snapToEdge;
+    }
+
+    /** Stops any pending move or fling; call before the window is removed. */
+    void cancel() {
+        stopFling();
+        if (frameScheduled) {
+            choreographer.removeFrameCallback(this);
+            frameScheduled = false;
+        }
+        dragging = false;
+        recycleVelocityTracker();
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        countFrame(frameTimeNanos);
+
+        if (flinging) {
+            float t = Math.max(0f, Math.min(1f,
+                    (frameTimeNanos - flingStartNanos) / (float) FLING_DURATION_NANOS));
+            // Decelerate so the release speed carries into the start of the motion.
+            float eased = 1f - (1f - t) * (1f - t);
+            targetX = flingFromX + Math.round((flingToX - flingFromX) * eased);
+            targetY = flingFromY + Math.round((flingToY - flingFromY) * eased);
+            if (t >= 1f) {
+                flinging = false;
+            }
+        }
+        if (dragging || flinging) {
+            // Keep ticking every vsync for the whole gesture so gaps between
+            // callbacks are real dropped frames, not idle time.
+            scheduleFrame();
+        }
+
+        if (params.x != targetX || params.y != targetY) {
+            params.x = targetX;
+            params.y = targetY;
+            if (window.getParent() != null) {
+                long startNanos = System.nanoTime();
+                windowManager.updateViewLayout(window, params);
+                PerfStats.WINDOW_UPDATE.recordSince(startNanos);
+            }
+        }
+
+        if (!dragging && !flinging && !frameScheduled) {
+            endMeasuring();
+        }
+    }
+
+    private void moveTo(int x, int y) {
+        targetX = x;
+        targetY = y;
+        scheduleFrame();
+    }
+
+    private void scheduleFrame() {
+        if (!frameScheduled) {
+            frameScheduled = true;
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    private void release(float velocityX, float velocityY) {
+        dragging = false;
+        if (!snapToEdge) {
+            scheduleFrame();
+            return;
+        }
+
+        DisplayMetrics metrics = window.getResources().getDisplayMetrics();
+        int maxX = Math.max(0, metrics.widthPixels - window.getWidth());
+        int maxY = Math.max(0, metrics.heightPixels - window.getHeight());
+
+        float projectedX = targetX;
+        float projectedY = targetY;
+        if (Math.hypot(velocityX, velocityY) >= minimumFlingVelocity) {
+            projectedX += velocityX * FLING_PROJECTION_SECONDS;
+            projectedY += velocityY * FLING_PROJECTION_SECONDS;
+        }
+
+        flingFromX = targetX;
+        flingFromY = targetY;
+        flingToX = projectedX + window.getWidth() / 2f < metrics.widthPixels / 2f ? 0 : maxX;
+        flingToY = Math.max(0, Math.min(maxY, Math.round(projectedY)));
+        flingStartNanos = System.nanoTime();
+        flinging = true;
+        scheduleFrame();
+    }
+
+    private void stopFling() {
+        if (flinging) {
+            flinging = false;
+            targetX = params.x;
+            targetY = params.y;
+        }
+    }
+
+    private void beginMeasuring() {
+        lastFrameNanos = 0;
+        gestureFrames = 0;
+        gestureDroppedFrames = 0;
+    }
+
+    private void countFrame(long frameTimeNanos) {
+        if (lastFrameNanos != 0) {
+            long skipped = (frameTimeNanos - lastFrameNanos - frameIntervalNanos / 2) / frameIntervalNanos;
+            if (skipped > 0) {
+                gestureDroppedFrames += skipped;
+            }
+        }
+        lastFrameNanos = frameTimeNanos;
+        gestureFrames++;
+    }
+
+    private void endMeasuring() {
+        if (gestureFrames == 0) {
+            return;
+        }
+        PerfStats.DRAG_FRAMES.addAndGet(gestureFrames);
+        PerfStats.DRAG_DROPPED_FRAMES.addAndGet(gestureDroppedFrames);
+        gestureFrames = 0;
+        gestureDroppedFrames = 0;
+        lastFrameNanos = 0;
+    }
+
+    private void recycleVelocityTracker() {
+        if (velocityTracker != null) {
+            velocityTracker.recycle();
+            velocityTracker = null;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.doordashtracker;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.widget.LinearLayout;
+import com.doordashtracker.core.PerfStats;
+
+/**
+ * The expanded overlay's root. Paints its rounded corners itself with one
+ * drawRoundRect instead of a background drawable clipped by an outline, which
+ * would cost a stencil or offscreen pass on every frame the panel is on screen.
+ * Children must stay clear of the corners, which the panel's padding ensures.
+ * Time spent drawing the panel is recorded in {@link PerfStats#OVERLAY_DRAW}.
+ */
+public class OverlayPanel extends LinearLayout {
+
+    private static final int PANEL_COLOR = 0xFF000000;
+    private static final float CORNER_RADIUS_DP = 16f;
+
+    private final Paint panelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF panelBounds = new RectF();
+    private final float cornerRadius;
+
+    public OverlayPanel(Context context) {
+        this(context, null);
+    }
+
+    public OverlayPanel(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        panelPaint.setColor(PANEL_COLOR);
+        cornerRadius = CORNER_RADIUS_DP * getResources().getDisplayMetrics().density;
+        setWillNotDraw(false);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        panelBounds.set(0, 0, w, h);
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        long startNanos = System.nanoTime();
+        super.draw(canvas);
+        PerfStats.OVERLAY_DRAW.recordSince(startNanos);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        canvas.drawRoundRect(panelBounds, cornerRadius, cornerRadius, panelPaint);
+    }
+}
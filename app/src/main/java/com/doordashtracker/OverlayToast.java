@@ -0,0 +1,133 @@
+package com.doordashtracker;
+
+import android.content.Context;
+import android.graphics.Outline;
+import android.graphics.PixelFormat;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewOutlineProvider;
+import android.view.WindowManager;
+import android.widget.TextView;
+
+/**
+ * Toast-style message window for the overlay. The window is built and added
+ * once, then only shown, re-texted and faded, so a tap never costs a
+ * WindowManager add/remove round trip. Messages posted within the same frame
+ * collapse into a single update, and one hide callback is rescheduled per
+ * message. Main thread only.
+ */
+class OverlayToast {
+
+    private static final long DISPLAY_MS = 2000;
+    private static final long FADE_MS = 150;
+
+    private final WindowManager windowManager;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final TextView textView;
+    private final WindowManager.LayoutParams params;
+
+    private CharSequence pendingMessage;
+    private boolean updatePosted;
+
+    private final Runnable updateRunnable = new Runnable() {
+        @Override
+        public void run() {
+            updatePosted = false;
+            if (pendingMessage == null) {
+                return;
+            }
+            textView.setText(pendingMessage);
+            pendingMessage = null;
+            attach();
+            textView.animate().cancel();
+            if (textView.getVisibility() != View.VISIBLE) {
+                textView.setAlpha(0f);
+                textView.setVisibility(View.VISIBLE);
+            }
+            textView.animate().alpha(1f).setDuration(FADE_MS);
+
+            handler.removeCallbacks(hideRunnable);
+            handler.postDelayed(hideRunnable, DISPLAY_MS);
+        }
+    };
+
+    private final Runnable hideRunnable = new Runnable() {
+        @Override
+        public void run() {
+            textView.animate().alpha(0f).setDuration(FADE_MS).withEndAction(new Runnable() {
+                @Override
+                public void run() {
+                    textView.setVisibility(View.GONE);
+                }
+            });
+        }
+    };
+
+    OverlayToast(Context context, WindowManager windowManager) {
+        this.windowManager = windowManager;
+
+        float density = context.getResources().getDisplayMetrics().density;
+        textView = new TextView(context);
+        textView.setTextSize(14);
+        textView.setTextColor(0xFFFFFFFF);
+        textView.setPadding(48, 24, 48, 24);
+        textView.setBackgroundColor(0xE6000000);
+        textView.setVisibility(View.GONE);
+
+        final float cornerRadius = 24 * density;
+        textView.setOutlineProvider(new ViewOutlineProvider() {
+            @Override
+            public void getOutline(View view, Outline outline) {
+                outline.setRoundRect(0, 0, view.getWidth(), view.getHeight(), cornerRadius);
+            }
+        });
+        textView.setClipToOutline(true);
+
+        params = new WindowManager.LayoutParams(
+                WindowManager.LayoutParams.WRAP_CONTENT,
+                WindowManager.LayoutParams.WRAP_CONTENT,
+                WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY,
+                WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE | WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE,
+                PixelFormat.TRANSLUCENT
+        );
+        params.gravity = Gravity.BOTTOM | Gravity.CENTER_HORIZONTAL;
+        params.y = (int) (65 * density);
+    }
+
+    void show(CharSequence message) {
+        pendingMessage = message;
+        if (!updatePosted) {
+            updatePosted = true;
+            handler.post(updateRunnable);
+        }
+    }
+
+    /** Removes the window; call when the overlay service goes away. */
+    void release() {
+        handler.removeCallbacks(updateRunnable);
+        handler.removeCallbacks(hideRunnable);
+        updatePosted = false;
+        pendingMessage = null;
+        textView.animate().cancel();
+        if (textView.getParent() != null) {
+            try {
+                windowManager.removeView(textView);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void attach() {
+        if (textView.getParent() != null) {
+            return;
+        }
+        try {
+            windowManager.addView(textView, params);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
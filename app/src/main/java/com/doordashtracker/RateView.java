@@ -0,0 +1,103 @@
+package com.doordashtracker;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+import com.doordashtracker.core.TextBuffer;
+import com.doordashtracker.core.TrackerState;
+import com.doordashtracker.core.WindowStats;
+
+/**
+ * The panel's acceptance rate with its trend arrow, drawn as one view instead
+ * of two TextViews in a row. Its height only depends on the text size, so a
+ * new rate is an invalidate and never a relayout of the panel.
+ */
+public class RateView extends View {
+
+    private static final String PLACEHOLDER = "--";
+    private static final String ARROW_UP = "▲";
+    private static final String ARROW_DOWN = "▼";
+
+    private final Paint ratePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint trendPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final TextBuffer rate = new TextBuffer(8);
+    private final float trendGap;
+
+    private int permille = Integer.MIN_VALUE;
+    private int tier = -1;
+    private int trend = WindowStats.TREND_FLAT;
+    private String trendArrow = ARROW_UP;
+
+    public RateView(Context context) {
+        this(context, null);
+    }
+
+    public RateView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        float scaledDensity = getResources().getDisplayMetrics().scaledDensity;
+        ratePaint.setTextSize(42 * scaledDensity);
+        ratePaint.setFakeBoldText(true);
+        ratePaint.setColor(Tiers.color(TrackerState.TIER_HIGH));
+        trendPaint.setTextSize(20 * scaledDensity);
+        trendGap = 4 * getResources().getDisplayMetrics().density;
+        rate.append(PLACEHOLDER);
+    }
+
+    /** Shows {@code permille}, or {@code 0%} if it is negative. */
+    public void setRate(int permille, int tier, int trend) {
+        if (permille < 0) {
+            permille = -1;
+        }
+        if (permille == this.permille && tier == this.tier && trend == this.trend) {
+            return;
+        }
+        if (permille != this.permille) {
+            if (permille < 0) {
+                rate.clear().append("0%");
+            } else {
+                rate.clear().appendPercent(permille);
+            }
+        }
+        this.permille = permille;
+        this.tier = tier;
+        this.trend = trend;
+        ratePaint.setColor(Tiers.color(tier));
+        if (trend == WindowStats.TREND_UP) {
+            trendArrow = ARROW_UP;
+            trendPaint.setColor(Tiers.color(TrackerState.TIER_HIGH));
+        } else if (trend == WindowStats.TREND_DOWN) {
+            trendArrow = ARROW_DOWN;
+            trendPaint.setColor(Tiers.color(TrackerState.TIER_LOW));
+        }
+        invalidate();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        Paint.FontMetrics metrics = ratePaint.getFontMetrics();
+        int height = (int) Math.ceil(metrics.descent - metrics.ascent) + getPaddingTop() + getPaddingBottom();
+        setMeasuredDimension(getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec),
+                resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        float rateWidth = ratePaint.measureText(rate.chars(), 0, rate.length());
+        float trendWidth = 0f;
+        if (trend != WindowStats.TREND_FLAT) {
+            trendWidth = trendGap + trendPaint.measureText(trendArrow);
+        }
+        float left = getPaddingLeft()
+                + (getWidth() - getPaddingLeft() - getPaddingRight() - rateWidth - trendWidth) / 2;
+        float baseline = getPaddingTop() - ratePaint.ascent();
+        canvas.drawText(rate.chars(), 0, rate.length(), left, baseline, ratePaint);
+        if (trend != WindowStats.TREND_FLAT) {
+            // Centered on the rate's digits, as the row of TextViews had it.
+            float middle = baseline + (ratePaint.ascent() + ratePaint.descent()) / 2;
+            float trendBaseline = middle - (trendPaint.ascent() + trendPaint.descent()) / 2;
+            canvas.drawText(trendArrow, left + rateWidth + trendGap, trendBaseline, trendPaint);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.doordashtracker;
+
+import android.app.Activity;
+import android.graphics.Typeface;
+import android.os.Bundle;
+import android.view.Gravity;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+import android.widget.Toast;
+import com.doordashtracker.core.AnalyticsCube;
+import com.doordashtracker.core.TrackerState;
+import java.util.Locale;
+
+/**
+ * Accept and decline counts by recent days and weeks, by shift and by weekday,
+ * plus an hour-of-week heatmap, all read from the engine's
+ * {@link AnalyticsCube}. Each row is a range query, so rebinding after every
+ * decision costs the same however long the history is.
+ */
+public class StatsActivity extends Activity implements TrackerEngine.Listener {
+
+    private static final String[] WEEKDAY_NAMES = {
+            "Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday", "Sunday",
+    };
+    private static final String[] SHIFT_NAMES = {
+            "Breakfast", "Lunch", "Afternoon", "Dinner", "Late night",
+    };
+    private static final String[] RECENT_LABELS = {
+            "Today", "Last 7 days", "Last 30 days", "Last 90 days", "This week", "Last 4 weeks",
+    };
+    /** Days covered by the day-based rows of {@link #RECENT_LABELS}. */
+    private static final int[] RECENT_DAYS = {1, 7, 30, 90};
+    /** Weeks covered by the remaining rows. */
+    private static final int[] RECENT_WEEKS = {1, 4};
+
+    private TrackerEngine trackerEngine;
+    private final int[] counts = new int[2];
+    private TextView statusText;
+    private HourHeatmapView heatmapView;
+    private final TextView[] recentRows = new TextView[RECENT_LABELS.length];
+    private final TextView[] shiftRows = new TextView[AnalyticsCube.SHIFTS];
+    private final TextView[] weekdayRows = new TextView[AnalyticsCube.WEEKDAYS];
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_stats);
+
+        trackerEngine = TrackerEngine.getInstance(this);
+
+        statusText = findViewById(R.id.stats_status_text);
+        heatmapView = findViewById(R.id.hour_heatmap);
+        heatmapView.setOnCellClickListener(new HourHeatmapView.OnCellClickListener() {
+            @Override
+            public void onCellClick(int weekday, int hour) {
+                showHourDetails(weekday, hour);
+            }
+        });
+
+        buildRows((LinearLayout) findViewById(R.id.recent_container), "Recent", recentRows);
+        buildRows((LinearLayout) findViewById(R.id.shift_container), "By Shift", shiftRows);
+        buildRows((LinearLayout) findViewById(R.id.weekday_container), "By Weekday", weekdayRows);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        trackerEngine.addListener(this);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        trackerEngine.removeListener(this);
+    }
+
+    @Override
+    public void onTrackerStateChanged(TrackerState state) {
+        AnalyticsCube analytics = trackerEngine.getAnalytics();
+        if (analytics != null) {
+            bind(analytics);
+        }
+    }
+
+    private void bind(AnalyticsCube analytics) {
+        int untimed = analytics.untimedCount();
+        statusText.setText(untimed == 0 ? "Times are in your local time zone"
+                : untimed + " older orders were logged without a time and are not shown");
+
+        heatmapView.setAnalytics(analytics);
+
+        int today = analytics.dayOf(System.currentTimeMillis());
+        for (int i = 0; i < RECENT_DAYS.length; i++) {
+            analytics.countDays(today - RECENT_DAYS[i] + 1, today + 1, counts);
+            bindRow(recentRows[i], RECENT_LABELS[i]);
+        }
+        int thisWeek = AnalyticsCube.weekOf(today);
+        for (int i = 0; i < RECENT_WEEKS.length; i++) {
+            analytics.countWeeks(thisWeek - RECENT_WEEKS[i] + 1, thisWeek + 1, counts);
+            bindRow(recentRows[RECENT_DAYS.length + i], RECENT_LABELS[RECENT_DAYS.length + i]);
+        }
+
+        for (int shift = 0; shift < AnalyticsCube.SHIFTS; shift++) {
+            analytics.countShift(shift, counts);
+            int start = AnalyticsCube.SHIFT_START_HOURS[shift];
+            int end = AnalyticsCube.SHIFT_START_HOURS[(shift + 1) % AnalyticsCube.SHIFTS];
+            bindRow(shiftRows[shift], String.format(Locale.US, "%s %02d–%02d", SHIFT_NAMES[shift], start, end));
+        }
+
+        for (int weekday = 0; weekday < AnalyticsCube.WEEKDAYS; weekday++) {
+            analytics.countWeekday(weekday, counts);
+            bindRow(weekdayRows[weekday], WEEKDAY_NAMES[weekday]);
+        }
+    }
+
+    /** Shows {@link #counts} on {@code row}. */
+    private void bindRow(TextView row, String label) {
+        int total = counts[0] + counts[1];
+        if (total == 0) {
+            row.setText(label + ": no orders");
+            row.setTextColor(0xFF888888);
+            return;
+        }
+        double declineRate = counts[1] * 100.0 / total;
+        row.setText(String.format(Locale.US, "%s: %d %s · %.0f%% declined",
+                label, total, total == 1 ? "order" : "orders", declineRate));
+        if (declineRate > 50) {
+            row.setTextColor(0xFFF44336);
+        } else if (declineRate > 30) {
+            row.setTextColor(0xFFFFB300);
+        } else {
+            row.setTextColor(0xFF4CAF50);
+        }
+    }
+
+    private void buildRows(LinearLayout container, String title, TextView[] rows) {
+        TextView headerText = new TextView(this);
+        headerText.setText(title);
+        headerText.setGravity(Gravity.CENTER);
+        headerText.setTextColor(0xFFFFFFFF);
+        headerText.setTextSize(16);
+        headerText.setTypeface(null, Typeface.BOLD);
+        headerText.setPadding(0, 0, 0, 24);
+        container.addView(headerText);
+
+        for (int i = 0; i < rows.length; i++) {
+            TextView row = new TextView(this);
+            row.setTextColor(0xFF888888);
+            row.setTextSize(14);
+            row.setPadding(20, 8, 20, 8);
+            row.setText("--");
+            rows[i] = row;
+            container.addView(row);
+        }
+    }
+
+    private void showHourDetails(int weekday, int hour) {
+        AnalyticsCube analytics = trackerEngine.getAnalytics();
+        if (analytics == null) {
+            return;
+        }
+        analytics.countHours(weekday, hour, hour + 1, counts);
+        int total = counts[0] + counts[1];
+        String when = String.format(Locale.US, "%s %02d:00–%02d:00", WEEKDAY_NAMES[weekday], hour, (hour + 1) % 24);
+        String message = total == 0 ? when + ": no orders"
+                : String.format(Locale.US, "%s: %d accepted, %d declined", when, counts[0], counts[1]);
+        Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
+    }
+}
@@ -0,0 +1,23 @@
+package com.doordashtracker;
+
+import com.doordashtracker.core.TrackerState;
+
+/** Colors of the {@code TrackerState.TIER_} rate tiers, the same on every surface. */
+final class Tiers {
+
+    private static final int[] COLORS = new int[3];
+
+    static {
+        COLORS[TrackerState.TIER_LOW] = 0xFFF44336;
+        COLORS[TrackerState.TIER_MEDIUM] = 0xFFFFB300;
+        COLORS[TrackerState.TIER_HIGH] = 0xFF4CAF50;
+    }
+
+    private Tiers() {
+    }
+
+    /** Color of {@code tier}, one of the {@code TrackerState.TIER_} constants. */
+    static int color(int tier) {
+        return COLORS[tier];
+    }
+}
@@ -0,0 +1,774 @@
+package com.doordashtracker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Trace;
+import android.util.Base64;
+import android.util.Log;
+import com.doordashtracker.core.AcceptanceWindow;
+import com.doordashtracker.core.AnalyticsCube;
+import com.doordashtracker.core.EventStore;
+import com.doordashtracker.core.HistoryCodec;
+import com.doordashtracker.core.OrderJournal;
+import com.doordashtracker.core.PerfStats;
+import com.doordashtracker.core.StateSnapshot;
+import com.doordashtracker.core.TimeWindow;
+import com.doordashtracker.core.TrackerState;
+import com.doordashtracker.core.WindowStats;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Process-wide owner of the order history. The activity, the overlay and any
+ * other surface read and change the history only through this engine and are
+ * pushed a fresh {@link TrackerState} after every change.
+ *
+ * All methods must be called on the main thread. Changes are applied and
+ * published immediately; the journal writes behind them on a single writer
+ * thread, batching the decisions made within {@link #WRITE_DELAY_MS}.
+ *
+ * Every decision is kept, with its time and source, in an {@link EventStore};
+ * the rolling windows are views of its tail. The history is loaded on the
+ * writer thread too. Until it is, listeners receive nothing and
+ * {@link #getState()} returns null; decisions made in the meantime are queued
+ * and applied on top of the loaded history.
+ *
+ * Alongside the count-based windows a {@link TimeWindow} tracks the last
+ * {@link #TIME_WINDOW_MILLIS}. A single main-thread callback is scheduled for
+ * when its oldest decision ages out, so the published rate stays current while
+ * nothing else happens. Changes to the {@link StateSnapshot} the widget and
+ * tile render from are written along with the journal batch, and the widget
+ * and tile are only refreshed when what they show changes. The
+ * {@link AnalyticsCube} is only built, on the writer thread, once something
+ * asks for it, so a start that never shows statistics does not read the whole
+ * history. From then on it is kept up to date with every decision.
+ *
+ * A decision tapped on the widget or tile while no engine is running is
+ * logged by {@link #logDetached} without loading anything: one journal record
+ * and an updated snapshot. Once an engine opens the journal it owns it for the
+ * life of the process, and detached logging hands over to it.
+ */
+public final class TrackerEngine {
+
+    public interface Listener {
+        void onTrackerStateChanged(TrackerState state);
+    }
+
+    /** Window lengths offered in the settings dialog. */
+    public static final int[] PRESET_WINDOW_SIZES = {100, 250, 500, 1000, 10000};
+
+    private static final int DEFAULT_WINDOW_SIZE = 100;
+    /** The calendar window DoorDash rates some metrics over. */
+    private static final long TIME_WINDOW_MILLIS = 30L * 24 * 60 * 60 * 1000;
+    private static final String PREFS_NAME = "DoordashTrackerPrefs";
+    private static final String KEY_ORDER_HISTORY = "orderHistory";
+    private static final String KEY_WINDOW_SIZES = "windowSizes";
+    private static final String KEY_HISTORY_SNAPSHOT = "orderHistorySnapshot";
+    private static final String HISTORY_DIR = "history";
+    private static final int COMPACTION_THRESHOLD = 256;
+    private static final long COMPACTION_DELAY_MS = 60000;
+    private static final long WRITE_DELAY_MS = 500;
+    private static final String TAG = "TrackerEngine";
+
+    private static TrackerEngine instance;
+
+    /** Held while the journal is opened, and while a decision is logged without it. */
+    private static final Object JOURNAL_LOCK = new Object();
+    /** Set under {@link #JOURNAL_LOCK} once an engine has opened, or started to open, the journal. */
+    private static boolean journalClaimed;
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private final OrderJournal journal;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // The journal is only touched on this thread once it has been opened.
+    private final ExecutorService writerExecutor = Executors.newSingleThreadExecutor();
+    private final Runnable compactionRunnable = new Runnable() {
+        @Override
+        public void run() {
+            compact();
+        }
+    };
+    private final Runnable writeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            submitPendingRecords();
+        }
+    };
+    private final Runnable expiryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            scheduledExpiryMillis = Long.MAX_VALUE;
+            if (timeWindow.expire(System.currentTimeMillis())) {
+                publish();
+            } else {
+                scheduleExpiry();
+            }
+        }
+    };
+    private boolean loaded;
+    private boolean journalOpen;
+    /** Whether {@link #writeRunnable} is posted. */
+    private boolean writeScheduled;
+    /** Whether the journal opened; only read and written on the writer thread. */
+    private boolean journalReady;
+    private int[] deferredWindowSizes;
+
+    /** Records not yet handed to the writer, or not yet applied while loading. */
+    private byte[] pendingOps = new byte[64];
+    private byte[] pendingSources = new byte[64];
+    private long[] pendingTimestamps = new long[64];
+    private int pendingCount;
+    /** How many of the pending records were handed to the writer while loading. */
+    private int pendingSubmitted;
+    /** Records written or queued since the last compaction was queued. */
+    private int uncompactedRecords;
+
+    /** Every decision ever logged. Null until the history has loaded. */
+    private EventStore events;
+    /**
+     * Tracked windows, smallest first. The smallest is the primary window shown
+     * as the acceptance rate. Each is filled from the tail of {@link #events}
+     * and then kept up to date incrementally. Null until the history has loaded.
+     */
+    private AcceptanceWindow[] windows;
+    /** Streaks and trend of the primary window. Null until the history has loaded. */
+    private WindowStats windowStats;
+    /** Null until the history has loaded. */
+    private TimeWindow timeWindow;
+    /** Wall-clock time {@link #expiryRunnable} is posted for, or MAX_VALUE if it is not. */
+    private long scheduledExpiryMillis = Long.MAX_VALUE;
+    /** Null until built, after it is first asked for. */
+    private AnalyticsCube analytics;
+    private boolean analyticsRequested;
+    private final List<Listener> listeners = new ArrayList<>();
+    private TrackerState state;
+    /** Last snapshot written for the widget and tile, or read at load. */
+    private StateSnapshot savedSnapshot;
+    /** Whether a publish since the last write may have changed the snapshot. */
+    private boolean snapshotDirty;
+    private long version;
+
+    public static TrackerEngine getInstance(Context context) {
+        if (instance == null) {
+            instance = new TrackerEngine(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /** Whether this process already has an engine; does not create one. */
+    public static boolean hasInstance() {
+        return instance != null;
+    }
+
+    /**
+     * Logs a decision without loading the history, for a process with no
+     * engine: appends one journal record and applies the decision to the saved
+     * snapshot, then refreshes the widget and tile. Runs on any thread but the
+     * main one. Returns false, having logged nothing, if an engine owns the
+     * journal or the snapshot does not match it; then log the decision through
+     * {@link #addOrder}.
+     */
+    public static boolean logDetached(Context context, boolean accepted, byte source) {
+        File snapshotFile = HomeSurfaces.snapshotFile(context);
+        StateSnapshot updated;
+        synchronized (JOURNAL_LOCK) {
+            if (journalClaimed) {
+                return false;
+            }
+            OrderJournal detached = new OrderJournal(new File(context.getFilesDir(), HISTORY_DIR));
+            try {
+                StateSnapshot saved = StateSnapshot.read(snapshotFile);
+                // A snapshot behind the journal, say after a crash between the
+                // two writes, would be advanced from the wrong window.
+                if (!saved.canAdvance() || saved.eventCount() != detached.countRecords()) {
+                    return false;
+                }
+                updated = saved.after(accepted);
+                detached.appendDetached(accepted ? OrderJournal.OP_ACCEPT : OrderJournal.OP_DECLINE,
+                        source, System.currentTimeMillis());
+            } catch (IOException | IllegalArgumentException e) {
+                Log.w(TAG, "Cannot log decision without loading the history", e);
+                return false;
+            }
+            try {
+                updated.write(snapshotFile);
+            } catch (IOException e) {
+                // The record is in the journal; the stale snapshot no longer
+                // matches it, so the next decision goes through an engine.
+                Log.w(TAG, "Failed to save state snapshot", e);
+            }
+        }
+        HomeSurfaces.refresh(context, updated);
+        return true;
+    }
+
+    private TrackerEngine(Context context) {
+        this.context = context;
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        journal = new OrderJournal(new File(context.getFilesDir(), HISTORY_DIR));
+        writerExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                loadOrderHistory();
+            }
+        });
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * The full event history, or null while loading. Other threads may read it
+     * without locking; only this engine appends to it.
+     */
+    public EventStore getEvents() {
+        return events;
+    }
+
+    /**
+     * Accept and decline counts by hour, day and week, or null while they are
+     * still being built. The first call starts building them; listeners are
+     * pushed a new state once they are ready.
+     */
+    public AnalyticsCube getAnalytics() {
+        if (analytics == null && !analyticsRequested) {
+            analyticsRequested = true;
+            if (loaded) {
+                queueAnalyticsBuild();
+            }
+        }
+        return analytics;
+    }
+
+    /** Current state, or null while the history is still loading. */
+    public TrackerState getState() {
+        return state;
+    }
+
+    /**
+     * Registers {@code listener} and immediately delivers the current state to
+     * it, or delivers it once the history has loaded.
+     */
+    public void addListener(Listener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+        // The expiry callback runs on uptime and falls behind while the device
+        // sleeps, so catch up whenever a surface comes back.
+        if (loaded && timeWindow.expire(System.currentTimeMillis())) {
+            publish();
+        } else if (state != null) {
+            listener.onTrackerStateChanged(state);
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /** @param source one of the {@code EventStore.SOURCE_} constants */
+    public void addOrder(boolean accepted, byte source) {
+        long startNanos = System.nanoTime();
+        PerfStats.ORDERS.incrementAndGet();
+        byte op = accepted ? OrderJournal.OP_ACCEPT : OrderJournal.OP_DECLINE;
+        long now = System.currentTimeMillis();
+        if (loaded) {
+            events.append(now, op, source);
+            windowStats.onAdd(windows[0], accepted, windows[0].add(accepted));
+            for (int i = 1; i < windows.length; i++) {
+                windows[i].add(accepted);
+            }
+            timeWindow.add(now, accepted);
+            if (analytics != null) {
+                analytics.add(now, op);
+            }
+        }
+        saveOrderHistory(op, source, now);
+        if (loaded) {
+            publish();
+        }
+        PerfStats.ADD_ORDER.recordSince(startNanos);
+    }
+
+    /** Empties the rolling windows. The event history keeps a reset marker. */
+    public void reset() {
+        long now = System.currentTimeMillis();
+        if (loaded) {
+            events.append(now, OrderJournal.OP_RESET, EventStore.SOURCE_UNKNOWN);
+            for (AcceptanceWindow window : windows) {
+                window.clear();
+            }
+            windowStats.clear();
+            timeWindow.clear();
+        }
+        saveOrderHistory(OrderJournal.OP_RESET, EventStore.SOURCE_UNKNOWN, now);
+        if (loaded) {
+            publish();
+        }
+    }
+
+    /**
+     * Hands any batched decisions to the writer without waiting for them. Call
+     * from lifecycle callbacks such as onStop, onTrimMemory and a service's
+     * onDestroy, after which the process may be killed; the writer gets to them
+     * within milliseconds.
+     */
+    public void drain() {
+        submitPendingRecords();
+    }
+
+    /**
+     * Like {@link #drain()}, then runs {@code whenWritten} on the writer thread
+     * once everything queued so far is written.
+     */
+    public void drain(Runnable whenWritten) {
+        submitPendingRecords();
+        writerExecutor.execute(whenWritten);
+    }
+
+    /**
+     * Lengths of the tracked windows, smallest (the primary one) first. While
+     * loading, this is the pending request or the default.
+     */
+    public int[] getWindowSizes() {
+        if (!loaded) {
+            return deferredWindowSizes != null ? deferredWindowSizes.clone() : new int[] {DEFAULT_WINDOW_SIZE};
+        }
+        int[] sizes = new int[windows.length];
+        for (int i = 0; i < windows.length; i++) {
+            sizes[i] = windows[i].capacity();
+        }
+        return sizes;
+    }
+
+    /**
+     * Changes which window lengths are tracked. The smallest becomes the primary
+     * window. Every window is refilled from the event history since the last
+     * reset.
+     */
+    public void setWindowSizes(int[] sizes) {
+        int[] normalized = normalizeWindowSizes(sizes);
+        if (!loaded) {
+            deferredWindowSizes = normalized;
+            return;
+        }
+        if (applyWindowSizes(normalized)) {
+            publish();
+        }
+    }
+
+    private boolean applyWindowSizes(int[] normalized) {
+        if (Arrays.equals(normalized, getWindowSizes())) {
+            return false;
+        }
+
+        windows = createWindows(normalized);
+        fillWindows();
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < normalized.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(normalized[i]);
+        }
+        prefs.edit().putString(KEY_WINDOW_SIZES, sb.toString()).apply();
+        return true;
+    }
+
+    private void fillWindows() {
+        for (int i = 1; i < windows.length; i++) {
+            events.fillWindow(windows[i]);
+        }
+
+        // The primary window is replayed through its statistics, starting a few
+        // decisions early so the trend and rate changes are known right away.
+        AcceptanceWindow primary = windows[0];
+        primary.clear();
+        windowStats = new WindowStats(primary.capacity());
+        int end = events.size();
+        for (int i = events.decisionsStart(primary.capacity() + WindowStats.MAX_CHANGE_SPAN); i < end; i++) {
+            boolean accepted = events.op(i) == OrderJournal.OP_ACCEPT;
+            windowStats.onAdd(primary, accepted, primary.add(accepted));
+        }
+    }
+
+    private TrackerState createState() {
+        AcceptanceWindow[] comparisons = Arrays.copyOfRange(windows, 1, windows.length);
+        return new TrackerState(version, windows[0], windowStats, timeWindow, comparisons);
+    }
+
+    private static AcceptanceWindow[] createWindows(int[] sizes) {
+        AcceptanceWindow[] created = new AcceptanceWindow[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            created[i] = new AcceptanceWindow(sizes[i]);
+        }
+        return created;
+    }
+
+    private static int[] parseWindowSizes(String value) {
+        if (value == null || value.isEmpty()) {
+            return new int[] {DEFAULT_WINDOW_SIZE};
+        }
+        String[] parts = value.split(",");
+        int[] sizes = new int[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                sizes[i] = Integer.parseInt(parts[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Ignoring malformed window sizes " + value, e);
+            return new int[] {DEFAULT_WINDOW_SIZE};
+        }
+        return normalizeWindowSizes(sizes);
+    }
+
+    /** Sorts ascending and drops duplicates and non-positive sizes. */
+    private static int[] normalizeWindowSizes(int[] sizes) {
+        int[] sorted = sizes.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int size : sorted) {
+            if (size > 0 && (count == 0 || sorted[count - 1] != size)) {
+                sorted[count++] = size;
+            }
+        }
+        return count == 0 ? new int[] {DEFAULT_WINDOW_SIZE} : Arrays.copyOf(sorted, count);
+    }
+
+    private void publish() {
+        timeWindow.expire(System.currentTimeMillis());
+        scheduleExpiry();
+        version++;
+        state = createState();
+        Listener[] snapshot = listeners.toArray(new Listener[0]);
+        for (Listener listener : snapshot) {
+            listener.onTrackerStateChanged(state);
+        }
+        updateSnapshot();
+    }
+
+    /** Marks the snapshot for the next batched write instead of writing it per publish. */
+    private void updateSnapshot() {
+        snapshotDirty = true;
+        scheduleWrite();
+    }
+
+    /**
+     * Queues a write of the snapshot if it changed, behind any records just
+     * queued, and a refresh of the widget and tile if what they show changed.
+     */
+    private void saveSnapshot() {
+        if (!snapshotDirty || !loaded) {
+            return;
+        }
+        snapshotDirty = false;
+        final StateSnapshot updated = StateSnapshot.of(windows[0], windowStats, events.size());
+        if (updated.equals(savedSnapshot)) {
+            return;
+        }
+        final boolean refresh = savedSnapshot == null || !updated.looksLike(savedSnapshot);
+        savedSnapshot = updated;
+        writerExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    updated.write(HomeSurfaces.snapshotFile(context));
+                } catch (IOException e) {
+                    Log.w(TAG, "Failed to save state snapshot", e);
+                }
+                if (refresh) {
+                    HomeSurfaces.refresh(context, updated);
+                }
+            }
+        });
+    }
+
+    private void scheduleWrite() {
+        if (!writeScheduled) {
+            writeScheduled = true;
+            mainHandler.postDelayed(writeRunnable, WRITE_DELAY_MS);
+        }
+    }
+
+    /** Posts {@link #expiryRunnable} for the time window's next expiry, if that moved. */
+    private void scheduleExpiry() {
+        long next = timeWindow.nextExpiryMillis();
+        if (next == scheduledExpiryMillis) {
+            return;
+        }
+        mainHandler.removeCallbacks(expiryRunnable);
+        scheduledExpiryMillis = next;
+        if (next != Long.MAX_VALUE) {
+            mainHandler.postDelayed(expiryRunnable, Math.max(0L, next - System.currentTimeMillis()));
+        }
+    }
+
+    private void saveOrderHistory(byte op, byte source, long timestampMillis) {
+        if (loaded && !journalOpen) {
+            return;
+        }
+        if (pendingCount == pendingOps.length) {
+            pendingOps = Arrays.copyOf(pendingOps, pendingCount * 2);
+            pendingSources = Arrays.copyOf(pendingSources, pendingCount * 2);
+            pendingTimestamps = Arrays.copyOf(pendingTimestamps, pendingCount * 2);
+        }
+        pendingOps[pendingCount] = op;
+        pendingSources[pendingCount] = source;
+        pendingTimestamps[pendingCount] = timestampMillis;
+        pendingCount++;
+        scheduleWrite();
+
+        uncompactedRecords++;
+        if (uncompactedRecords >= COMPACTION_THRESHOLD) {
+            compact();
+        } else if (uncompactedRecords == 1) {
+            mainHandler.postDelayed(compactionRunnable, COMPACTION_DELAY_MS);
+        }
+    }
+
+    /**
+     * Queues the pending records for the writer, followed by the snapshot if it
+     * changed. While loading the records stay pending until
+     * {@link #onHistoryLoaded} applies them; the write runs after the load on
+     * the writer thread and is dropped if the journal did not open.
+     */
+    private void submitPendingRecords() {
+        mainHandler.removeCallbacks(writeRunnable);
+        writeScheduled = false;
+        queuePendingRecords();
+        saveSnapshot();
+    }
+
+    private void queuePendingRecords() {
+        if ((loaded && !journalOpen) || pendingCount == pendingSubmitted) {
+            return;
+        }
+        final byte[] ops = Arrays.copyOfRange(pendingOps, pendingSubmitted, pendingCount);
+        final byte[] sources = Arrays.copyOfRange(pendingSources, pendingSubmitted, pendingCount);
+        final long[] timestamps = Arrays.copyOfRange(pendingTimestamps, pendingSubmitted, pendingCount);
+        if (loaded) {
+            pendingCount = 0;
+        } else {
+            pendingSubmitted = pendingCount;
+        }
+        writerExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!journalReady) {
+                    return;
+                }
+                long startNanos = System.nanoTime();
+                try {
+                    journal.append(ops, sources, timestamps, ops.length);
+                    PerfStats.JOURNAL_WRITE.recordSince(startNanos);
+                    PerfStats.JOURNAL_RECORDS.addAndGet(ops.length);
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to append to order journal", e);
+                }
+            }
+        });
+    }
+
+    private void compact() {
+        mainHandler.removeCallbacks(compactionRunnable);
+        if (!journalOpen || uncompactedRecords == 0) {
+            return;
+        }
+        queueCompaction();
+    }
+
+    /** Queues the batched records followed by a compaction that archives them. */
+    private void queueCompaction() {
+        mainHandler.removeCallbacks(compactionRunnable);
+        submitPendingRecords();
+        uncompactedRecords = 0;
+
+        writerExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long startNanos = System.nanoTime();
+                try {
+                    journal.compact();
+                    PerfStats.JOURNAL_COMPACTION.recordSince(startNanos);
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to rotate order journal", e);
+                }
+            }
+        });
+    }
+
+    /** Runs on the writer thread, ahead of every write. */
+    private void loadOrderHistory() {
+        Trace.beginSection("TrackerEngine.load");
+        long startNanos = System.nanoTime();
+        try {
+            final int[] sizes = parseWindowSizes(prefs.getString(KEY_WINDOW_SIZES, null));
+            EventStore opened = loadEvents();
+            journalReady = opened != null;
+            final EventStore loadedEvents = opened != null ? opened : new EventStore();
+            final int replayedRecords = opened != null ? journal.pendingRecords() : -1;
+            final StateSnapshot snapshot = StateSnapshot.read(HomeSurfaces.snapshotFile(context));
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    savedSnapshot = snapshot;
+                    onHistoryLoaded(loadedEvents, sizes, replayedRecords);
+                }
+            });
+            PerfStats.HISTORY_LOAD.recordSince(startNanos);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    private void queueAnalyticsBuild() {
+        final EventStore source = events;
+        writerExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                buildAnalytics(source);
+            }
+        });
+    }
+
+    /**
+     * Runs on the writer thread once the history is published. Aggregates the
+     * events there so far and lets the main thread add any logged meanwhile.
+     */
+    private void buildAnalytics(EventStore loadedEvents) {
+        long startNanos = System.nanoTime();
+        final AnalyticsCube cube = new AnalyticsCube(TimeZone.getDefault());
+        final int built = loadedEvents.size();
+        cube.addAll(loadedEvents, 0, built);
+        PerfStats.ANALYTICS_BUILD.recordSince(startNanos);
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                cube.addAll(events, built, events.size());
+                analytics = cube;
+                publish();
+            }
+        });
+    }
+
+    /**
+     * Opens the journal, migrating older storage if needed. Returns the full
+     * history, or null if the journal could not be opened.
+     */
+    private EventStore loadEvents() {
+        boolean migrate;
+        EventStore loadedEvents;
+        try {
+            synchronized (JOURNAL_LOCK) {
+                journalClaimed = true;
+                migrate = journal.isEmpty();
+                loadedEvents = journal.open();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to open order journal, history will not be saved", e);
+            return null;
+        }
+
+        AcceptanceWindow migrated = migrate ? migrateFromPreferences() : null;
+        if (migrated != null) {
+            // Older versions kept neither times nor anything beyond the window.
+            try {
+                for (int i = 0; i < migrated.size(); i++) {
+                    byte op = migrated.get(i) ? OrderJournal.OP_ACCEPT : OrderJournal.OP_DECLINE;
+                    loadedEvents.append(0L, op, EventStore.SOURCE_UNKNOWN);
+                    journal.append(op, EventStore.SOURCE_UNKNOWN, 0L);
+                }
+                journal.compact();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to write migrated history", e);
+                return loadedEvents;
+            }
+            prefs.edit()
+                    .remove(KEY_HISTORY_SNAPSHOT)
+                    .remove(KEY_ORDER_HISTORY)
+                    .apply();
+        }
+        return loadedEvents;
+    }
+
+    private void onHistoryLoaded(EventStore loadedEvents, int[] sizes, int replayedRecords) {
+        events = loadedEvents;
+        journalOpen = replayedRecords >= 0;
+        loaded = true;
+
+        // Apply what was decided while loading. What a drain already handed to
+        // the writer is dropped from the queue; the rest is still to be written.
+        for (int i = 0; i < pendingCount; i++) {
+            events.append(pendingTimestamps[i], pendingOps[i], pendingSources[i]);
+        }
+        if (pendingSubmitted > 0) {
+            int remaining = pendingCount - pendingSubmitted;
+            System.arraycopy(pendingOps, pendingSubmitted, pendingOps, 0, remaining);
+            System.arraycopy(pendingSources, pendingSubmitted, pendingSources, 0, remaining);
+            System.arraycopy(pendingTimestamps, pendingSubmitted, pendingTimestamps, 0, remaining);
+            pendingCount = remaining;
+            pendingSubmitted = 0;
+        }
+        windows = createWindows(sizes);
+        fillWindows();
+        timeWindow = new TimeWindow(TIME_WINDOW_MILLIS);
+        timeWindow.fill(events, System.currentTimeMillis());
+        if (deferredWindowSizes != null) {
+            applyWindowSizes(deferredWindowSizes);
+            deferredWindowSizes = null;
+        }
+
+        if (!journalOpen) {
+            pendingCount = 0;
+            uncompactedRecords = 0;
+        } else {
+            uncompactedRecords += replayedRecords;
+            if (pendingCount > 0) {
+                scheduleWrite();
+            }
+            if (uncompactedRecords >= COMPACTION_THRESHOLD) {
+                compact();
+            } else if (uncompactedRecords > 0) {
+                mainHandler.postDelayed(compactionRunnable, COMPACTION_DELAY_MS);
+            }
+        }
+        if (analyticsRequested) {
+            queueAnalyticsBuild();
+        }
+        publish();
+    }
+
+    /** Loads the window saved by versions that kept it in SharedPreferences. */
+    private AcceptanceWindow migrateFromPreferences() {
+        String snapshot = prefs.getString(KEY_HISTORY_SNAPSHOT, null);
+        if (snapshot != null) {
+            try {
+                byte[] data = Base64.decode(snapshot, Base64.NO_WRAP);
+                AcceptanceWindow history = new AcceptanceWindow(HistoryCodec.decodedCapacity(data, 0, data.length));
+                HistoryCodec.decode(data, 0, data.length, history);
+                return history;
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "Discarding unreadable history snapshot", e);
+            }
+        }
+
+        String legacyHistory = prefs.getString(KEY_ORDER_HISTORY, null);
+        if (legacyHistory != null) {
+            AcceptanceWindow history = new AcceptanceWindow(DEFAULT_WINDOW_SIZE);
+            HistoryCodec.decodeLegacy(legacyHistory, history);
+            return history;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,67 @@
+package com.doordashtracker;
+
+import android.annotation.TargetApi;
+import android.app.AlertDialog;
+import android.content.DialogInterface;
+import android.graphics.drawable.Icon;
+import android.os.Build;
+import android.service.quicksettings.Tile;
+import android.service.quicksettings.TileService;
+import com.doordashtracker.core.EventStore;
+import com.doordashtracker.core.StateSnapshot;
+
+/**
+ * Quick Settings tile showing the acceptance rate. Tapping it asks whether the
+ * offer was accepted or declined. The tile is only bound while the panel is
+ * open and renders from the saved snapshot.
+ */
+@TargetApi(Build.VERSION_CODES.N)
+public class TrackerTileService extends TileService {
+
+    @Override
+    public void onStartListening() {
+        super.onStartListening();
+        Tile tile = getQsTile();
+        if (tile == null) {
+            return;
+        }
+        StateSnapshot snapshot = HomeSurfaces.readSnapshot(this);
+        tile.setIcon(Icon.createWithResource(this, R.drawable.ic_tile_rate));
+        tile.setLabel("AR " + HomeSurfaces.formatRate(snapshot));
+        tile.setState(snapshot.isEmpty() ? Tile.STATE_INACTIVE : Tile.STATE_ACTIVE);
+        tile.updateTile();
+    }
+
+    @Override
+    public void onClick() {
+        super.onClick();
+        if (isLocked()) {
+            unlockAndRun(new Runnable() {
+                @Override
+                public void run() {
+                    showDecisionDialog();
+                }
+            });
+        } else {
+            showDecisionDialog();
+        }
+    }
+
+    private void showDecisionDialog() {
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Log offer");
+        builder.setPositiveButton("Accept", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                sendBroadcast(HomeSurfaces.decision(TrackerTileService.this, true, EventStore.SOURCE_TILE));
+            }
+        });
+        builder.setNegativeButton("Decline", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                sendBroadcast(HomeSurfaces.decision(TrackerTileService.this, false, EventStore.SOURCE_TILE));
+            }
+        });
+        showDialog(builder.create());
+    }
+}
@@ -0,0 +1,19 @@
+package com.doordashtracker;
+
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.Context;
+
+/**
+ * Home-screen widget showing the acceptance rate with accept and decline
+ * buttons. Renders from the saved snapshot, so an update never loads the
+ * history.
+ */
+public class TrackerWidgetProvider extends AppWidgetProvider {
+
+    @Override
+    public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
+        appWidgetManager.updateAppWidget(appWidgetIds,
+                HomeSurfaces.buildWidgetViews(context, HomeSurfaces.readSnapshot(context)));
+    }
+}
@@ -0,0 +1,163 @@
+package com.doordashtracker.core;
+
+/**
+ * What-if answers for a {@link TrackerState}: how many straight accepts reach a
+ * target rate, what the rate will be after k accepts, and how many declines in a
+ * row can be absorbed while staying at or above a target.
+ *
+ * Answers for {@link #DEFAULT_TARGETS} are computed once on construction, the
+ * first time they are asked for; each one needs at most one word-wise pass over
+ * the window.
+ */
+public final class AcceptanceProjection {
+
+    public static final int[] DEFAULT_TARGETS = {50, 70, 90};
+
+    /** Returned by {@link #affordableDeclines(int)} when no number of declines breaks the target. */
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private final TrackerState state;
+    private final int[] acceptsToReach = new int[DEFAULT_TARGETS.length];
+    private final int[] affordableDeclines = new int[DEFAULT_TARGETS.length];
+
+    AcceptanceProjection(TrackerState state) {
+        this.state = state;
+        for (int i = 0; i < DEFAULT_TARGETS.length; i++) {
+            acceptsToReach[i] = computeAcceptsToReach(DEFAULT_TARGETS[i]);
+            affordableDeclines[i] = computeAffordableDeclines(DEFAULT_TARGETS[i]);
+        }
+    }
+
+    /**
+     * Consecutive accepts needed before the rate is at least {@code targetPercent},
+     * 0 if it already is, or -1 if the target can never be reached.
+     */
+    public int acceptsToReach(int targetPercent) {
+        int cached = indexOfTarget(targetPercent);
+        return cached >= 0 ? acceptsToReach[cached] : computeAcceptsToReach(targetPercent);
+    }
+
+    /**
+     * Consecutive declines that still leave the rate at or above {@code targetPercent},
+     * 0 if even one would drop below it, or {@link #UNLIMITED}.
+     */
+    public int affordableDeclines(int targetPercent) {
+        int cached = indexOfTarget(targetPercent);
+        return cached >= 0 ? affordableDeclines[cached] : computeAffordableDeclines(targetPercent);
+    }
+
+    /** Acceptance rate in percent after {@code accepts} further consecutive accepts. */
+    public double rateAfterAccepts(int accepts) {
+        int capacity = state.capacity();
+        int size = state.size();
+        int newSize = (int) Math.min((long) capacity, (long) size + accepts);
+        if (newSize == 0) {
+            return 0.0;
+        }
+        long evicted = Math.max(0L, (long) size + accepts - capacity);
+        int declines = state.declinedCount() - declinesBefore(evicted);
+        return ((newSize - declines) * 100.0) / newSize;
+    }
+
+    private int computeAcceptsToReach(int target) {
+        int size = state.size();
+        int capacity = state.capacity();
+        int declines = state.declinedCount();
+        if (target <= 0) {
+            return 0;
+        }
+        if (target > 100) {
+            return -1;
+        }
+
+        // Until the window is full nothing is evicted and only the size grows.
+        int slack = 100 - target;
+        if (slack > 0 || declines == 0) {
+            int minSize = slack == 0 ? Math.max(size, 1) : ceilDiv(declines * 100L, slack);
+            int accepts = Math.max(Math.max(0, minSize - size), size == 0 ? 1 : 0);
+            if (size + (long) accepts <= capacity) {
+                return accepts;
+            }
+        }
+
+        // Once full, the rate only rises when a decline falls off the front.
+        int allowed = (int) ((long) slack * capacity / 100);
+        return state.ordersUntilDeclineFallsOff(declines - allowed - 1);
+    }
+
+    private int computeAffordableDeclines(int target) {
+        int size = state.size();
+        int capacity = state.capacity();
+        int declines = state.declinedCount();
+        if (target <= 0) {
+            return UNLIMITED;
+        }
+        if (size == 0 || (long) (size - declines) * 100 < (long) target * size) {
+            return 0;
+        }
+
+        // While filling, each decline adds to both the declines and the size.
+        int slack = 100 - target;
+        long fillingBudget = ((long) slack * size - 100L * declines) / target;
+        int untilFull = capacity - size;
+        if (fillingBudget < untilFull) {
+            return (int) fillingBudget;
+        }
+
+        // Once full, a new decline only costs something when it evicts an accept.
+        long budget = (long) slack * capacity / 100 - ((long) declines + untilFull);
+        if (budget < 0) {
+            return untilFull;
+        }
+        int evictable = indexOfAccept(budget);
+        return evictable < 0 ? UNLIMITED : untilFull + evictable;
+    }
+
+    /** Number of declines among the oldest {@code count} entries. */
+    private int declinesBefore(long count) {
+        int entries = (int) Math.min(count, (long) state.size());
+        int fullWords = entries >>> 6;
+        int accepts = 0;
+        for (int i = 0; i < fullWords; i++) {
+            accepts += Long.bitCount(state.word(i));
+        }
+        if ((entries & 63) != 0) {
+            accepts += Long.bitCount(state.word(fullWords) & ((1L << entries) - 1));
+        }
+        return entries - accepts;
+    }
+
+    /** Window index of the accept with zero-based rank {@code rank}, or -1 if there are fewer. */
+    private int indexOfAccept(long rank) {
+        if (rank >= state.acceptedCount()) {
+            return -1;
+        }
+        int remaining = (int) rank;
+        int words = (state.size() + 63) >>> 6;
+        for (int i = 0; i < words; i++) {
+            long accepts = state.word(i);
+            int count = Long.bitCount(accepts);
+            if (remaining < count) {
+                for (int n = 0; n < remaining; n++) {
+                    accepts &= accepts - 1;
+                }
+                return (i << 6) + Long.numberOfTrailingZeros(accepts);
+            }
+            remaining -= count;
+        }
+        return -1;
+    }
+
+    private static int indexOfTarget(int target) {
+        for (int i = 0; i < DEFAULT_TARGETS.length; i++) {
+            if (DEFAULT_TARGETS[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int ceilDiv(long numerator, int denominator) {
+        return (int) ((numerator + denominator - 1) / denominator);
+    }
+}
@@ -0,0 +1,374 @@
+package com.doordashtracker.core;
+
+import java.util.Arrays;
+
+/**
+ * Rolling window of the most recent accept/decline decisions.
+ *
+ * Entries are packed one bit per order into a ring of longs, so appending,
+ * evicting and reading the counts never shift or allocate. Index 0 is always
+ * the oldest entry, i.e. the next one to fall off.
+ *
+ * Declines are additionally indexed by a FIFO of their sequence numbers, which
+ * makes the fall-off schedule of every decline available without a scan.
+ *
+ * The ring is split into chunks of {@link #CHUNK_WORDS} words that
+ * {@link #snapshot()} shares with the returned {@link PackedHistory}. A chunk
+ * is copied the first time it is written after a snapshot, so a snapshot per
+ * order costs one chunk copy instead of a copy of the whole window.
+ */
+public final class AcceptanceWindow {
+
+    public static final int EVICTED_NONE = -1;
+    public static final int EVICTED_DECLINE = 0;
+    public static final int EVICTED_ACCEPT = 1;
+
+    private static final int INITIAL_DECLINE_QUEUE = 16;
+    static final int CHUNK_SHIFT = 4;
+    static final int CHUNK_WORDS = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_WORDS - 1;
+
+    private final int capacity;
+    private final int wordCount;
+    private final long[][] chunks;
+    /** Whether each chunk is referenced by a snapshot and must be copied before a write. */
+    private final boolean[] chunkShared;
+    private int head;
+    private int size;
+    private int acceptedCount;
+
+    /** Sequence number the next appended entry will get; wraps harmlessly. */
+    private int nextSequence;
+    private int[] declineSequences;
+    private int declineHead;
+
+    public AcceptanceWindow(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.wordCount = (capacity + 63) >>> 6;
+        this.chunks = new long[(wordCount + CHUNK_WORDS - 1) >>> CHUNK_SHIFT][];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = new long[chunkLength(i)];
+        }
+        this.chunkShared = new boolean[chunks.length];
+        this.declineSequences = new int[Math.min(capacity, INITIAL_DECLINE_QUEUE)];
+    }
+
+    /**
+     * Appends a decision, evicting the oldest one when the window is full.
+     *
+     * @return {@link #EVICTED_NONE}, {@link #EVICTED_DECLINE} or {@link #EVICTED_ACCEPT}
+     */
+    public int add(boolean accepted) {
+        int evicted = EVICTED_NONE;
+        int slot;
+
+        if (size == capacity) {
+            slot = head;
+            evicted = readSlot(chunks, slot) ? EVICTED_ACCEPT : EVICTED_DECLINE;
+            if (evicted == EVICTED_ACCEPT) {
+                acceptedCount--;
+            } else {
+                declineHead = nextDeclineSlot(declineHead);
+            }
+            head = head + 1 == capacity ? 0 : head + 1;
+        } else {
+            slot = physical(size);
+            size++;
+        }
+
+        writeSlot(slot, accepted);
+        if (accepted) {
+            acceptedCount++;
+        } else {
+            pushDecline(nextSequence);
+        }
+        nextSequence++;
+        return evicted;
+    }
+
+    /** Returns the decision at {@code index}, where 0 is the oldest entry. */
+    public boolean get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        return readSlot(chunks, physical(index));
+    }
+
+    /**
+     * Returns 64 consecutive entries starting at logical index {@code wordIndex * 64},
+     * oldest in bit 0. Positions past {@link #size()} read as zero.
+     */
+    public long word(int wordIndex) {
+        return logicalWord(chunks, capacity, head, size, wordIndex);
+    }
+
+    /**
+     * Returns an immutable view of the current entries. The view shares storage
+     * with this window until either is written, so taking one is O(chunks).
+     */
+    public PackedHistory snapshot() {
+        for (int i = 0; i < chunkShared.length; i++) {
+            chunkShared[i] = true;
+        }
+        return new PackedHistory(capacity, head, size, chunks.clone());
+    }
+
+    /** Copies the window into a new array of {@link #word(int)} values, oldest entry first. */
+    public long[] toPackedArray() {
+        long[] packed = new long[(size + 63) >>> 6];
+        for (int i = 0; i < packed.length; i++) {
+            packed[i] = word(i);
+        }
+        return packed;
+    }
+
+    /**
+     * Returns the window index of the {@code n}-th oldest decline, where
+     * {@code n} runs from 0 to {@link #declinedCount()} - 1.
+     */
+    public int declineIndex(int n) {
+        if (n < 0 || n >= declinedCount()) {
+            throw new IndexOutOfBoundsException("decline " + n + ", declines " + declinedCount());
+        }
+        int slot = declineHead + n;
+        if (slot >= declineSequences.length) {
+            slot -= declineSequences.length;
+        }
+        return declineSequences[slot] - firstSequence();
+    }
+
+    /**
+     * Number of further orders after which the entry at {@code index} leaves the
+     * window, counting the orders still needed to fill it.
+     */
+    public int ordersUntilFallOff(int index) {
+        return capacity - size + index + 1;
+    }
+
+    /** Orders until the oldest decline leaves the window, or -1 if there are no declines. */
+    public int ordersUntilNextDeclineFallsOff() {
+        return declinedCount() == 0 ? -1 : ordersUntilFallOff(declineIndex(0));
+    }
+
+    /**
+     * Copies the window index of the oldest declines, oldest first, into
+     * {@code dest} until it is full and returns how many were written.
+     */
+    public int copyDeclineIndices(int[] dest) {
+        int count = Math.min(declinedCount(), dest.length);
+        int first = firstSequence();
+        int slot = declineHead;
+        for (int n = 0; n < count; n++) {
+            dest[n] = declineSequences[slot] - first;
+            slot = nextDeclineSlot(slot);
+        }
+        return count;
+    }
+
+    /**
+     * Replaces the contents with the newest entries of {@code source} that fit,
+     * oldest first. Used when windows are created or resized, not per order.
+     */
+    public void copyFrom(AcceptanceWindow source) {
+        clear();
+        for (int i = Math.max(0, source.size - capacity); i < source.size; i++) {
+            add(source.get(i));
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < chunks.length; i++) {
+            if (chunkShared[i]) {
+                chunks[i] = new long[chunks[i].length];
+                chunkShared[i] = false;
+            } else {
+                Arrays.fill(chunks[i], 0L);
+            }
+        }
+        head = 0;
+        size = 0;
+        acceptedCount = 0;
+        declineHead = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    public int acceptedCount() {
+        return acceptedCount;
+    }
+
+    public int declinedCount() {
+        return size - acceptedCount;
+    }
+
+    /** Acceptance rate in percent, or 0 when the window is empty. */
+    public double acceptanceRate() {
+        return size == 0 ? 0.0 : (acceptedCount * 100.0) / size;
+    }
+
+    int head() {
+        return head;
+    }
+
+    /** Number of words in the ring, for {@link HistoryCodec}. */
+    int rawWordCount() {
+        return wordCount;
+    }
+
+    /** Word {@code index} of the ring as it sits in memory, slot 0 in bit 0 of word 0. */
+    long rawWord(int index) {
+        return chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    /** Overwrites a word of the ring; {@link #restore} must follow. */
+    void setRawWord(int index, long value) {
+        writableChunk(index >>> CHUNK_SHIFT)[index & CHUNK_MASK] = value;
+    }
+
+    /** Restores the ring from raw storage written by {@link HistoryCodec}. */
+    void restore(int head, int size) {
+        if (head < 0 || head >= capacity || size < 0 || size > capacity) {
+            throw new IllegalArgumentException("head " + head + ", size " + size + ", capacity " + capacity);
+        }
+        int lastWordBits = capacity & 63;
+        if (lastWordBits != 0) {
+            setRawWord(wordCount - 1, rawWord(wordCount - 1) & ((1L << lastWordBits) - 1));
+        }
+        this.head = head;
+        this.size = size;
+
+        int accepted = 0;
+        int words = (size + 63) >>> 6;
+        for (int i = 0; i < words; i++) {
+            accepted += Long.bitCount(word(i));
+        }
+        this.acceptedCount = accepted;
+
+        nextSequence = size;
+        declineHead = 0;
+        ensureDeclineCapacity(size - accepted);
+        int declines = 0;
+        for (int i = 0; i < words; i++) {
+            long declined = ~word(i);
+            if (i == words - 1 && (size & 63) != 0) {
+                declined &= (1L << size) - 1;
+            }
+            while (declined != 0) {
+                declineSequences[declines++] = (i << 6) + Long.numberOfTrailingZeros(declined);
+                declined &= declined - 1;
+            }
+        }
+    }
+
+    private int firstSequence() {
+        return nextSequence - size;
+    }
+
+    private int nextDeclineSlot(int slot) {
+        return slot + 1 == declineSequences.length ? 0 : slot + 1;
+    }
+
+    private void pushDecline(int sequence) {
+        int count = declinedCount() - 1;
+        ensureDeclineCapacity(count + 1);
+        int slot = declineHead + count;
+        if (slot >= declineSequences.length) {
+            slot -= declineSequences.length;
+        }
+        declineSequences[slot] = sequence;
+    }
+
+    /** Grows the decline queue so it holds {@code count} entries, keeping them in order. */
+    private void ensureDeclineCapacity(int count) {
+        if (count <= declineSequences.length) {
+            return;
+        }
+        int length = declineSequences.length;
+        int[] grown = new int[Math.min(capacity, Math.max(count, length * 2))];
+        for (int n = 0; n < length; n++) {
+            int slot = declineHead + n;
+            grown[n] = declineSequences[slot >= length ? slot - length : slot];
+        }
+        declineSequences = grown;
+        declineHead = 0;
+    }
+
+    private int physical(int index) {
+        int slot = head + index;
+        return slot >= capacity ? slot - capacity : slot;
+    }
+
+    private int chunkLength(int chunk) {
+        return Math.min(CHUNK_WORDS, wordCount - (chunk << CHUNK_SHIFT));
+    }
+
+    private long[] writableChunk(int chunk) {
+        if (chunkShared[chunk]) {
+            chunks[chunk] = chunks[chunk].clone();
+            chunkShared[chunk] = false;
+        }
+        return chunks[chunk];
+    }
+
+    private void writeSlot(int slot, boolean accepted) {
+        int word = slot >>> 6;
+        long[] bits = writableChunk(word >>> CHUNK_SHIFT);
+        if (accepted) {
+            bits[word & CHUNK_MASK] |= 1L << slot;
+        } else {
+            bits[word & CHUNK_MASK] &= ~(1L << slot);
+        }
+    }
+
+    static boolean readSlot(long[][] chunks, int slot) {
+        int word = slot >>> 6;
+        return (chunks[word >>> CHUNK_SHIFT][word & CHUNK_MASK] & (1L << slot)) != 0;
+    }
+
+    /** Entries {@code wordIndex * 64} onwards of a ring, as {@link #word(int)} returns them. */
+    static long logicalWord(long[][] chunks, int capacity, int head, int size, int wordIndex) {
+        int start = wordIndex << 6;
+        if (start >= size) {
+            return 0L;
+        }
+        int count = Math.min(64, size - start);
+        int slot = head + start;
+        if (slot >= capacity) {
+            slot -= capacity;
+        }
+        int firstRun = Math.min(count, capacity - slot);
+        long value = extract(chunks, slot, firstRun);
+        if (firstRun < count) {
+            value |= extract(chunks, 0, count - firstRun) << firstRun;
+        }
+        return value;
+    }
+
+    private static long extract(long[][] chunks, int slot, int count) {
+        int offset = slot & 63;
+        int index = slot >>> 6;
+        long value = chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK] >>> offset;
+        if (offset + count > 64) {
+            int next = index + 1;
+            value |= chunks[next >>> CHUNK_SHIFT][next & CHUNK_MASK] << (64 - offset);
+        }
+        return count == 64 ? value : value & ((1L << count) - 1);
+    }
+}
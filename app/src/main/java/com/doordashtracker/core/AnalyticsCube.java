@@ -0,0 +1,157 @@
+package com.doordashtracker.core;
+
+import java.util.TimeZone;
+
+/**
+ * Pre-aggregated accept and decline counts by local hour of the week, by day
+ * and by week, kept in {@link FenwickTree}s so any range of buckets is summed in
+ * O(log n). Each decision updates one bucket per dimension; nothing is ever
+ * recomputed from the events.
+ *
+ * Days are local epoch days in the zone given at construction and weeks start
+ * on Monday. Events imported without a time are only counted by
+ * {@link #untimedCount()}. Query methods fill {@code counts[0]} with accepts
+ * and {@code counts[1]} with declines. Not thread-safe.
+ */
+public final class AnalyticsCube {
+
+    public static final int HOURS = 24;
+    public static final int WEEKDAYS = 7;
+
+    public static final int SHIFT_BREAKFAST = 0;
+    public static final int SHIFT_LUNCH = 1;
+    public static final int SHIFT_AFTERNOON = 2;
+    public static final int SHIFT_DINNER = 3;
+    public static final int SHIFT_LATE_NIGHT = 4;
+    public static final int SHIFTS = 5;
+    /** Local hour each shift starts at; each runs until the next one starts. */
+    public static final int[] SHIFT_START_HOURS = {6, 11, 14, 17, 21};
+
+    private static final long MILLIS_PER_HOUR = 60L * 60 * 1000;
+    private static final int HOURS_OF_WEEK = WEEKDAYS * HOURS;
+    /** Epoch day 0, 1970-01-01, was a Thursday. */
+    private static final int EPOCH_WEEKDAY = 3;
+
+    private final TimeZone zone;
+    private final FenwickTree hourAccepts = new FenwickTree(HOURS_OF_WEEK);
+    private final FenwickTree hourDeclines = new FenwickTree(HOURS_OF_WEEK);
+    private final FenwickTree dayAccepts = new FenwickTree(64);
+    private final FenwickTree dayDeclines = new FenwickTree(64);
+    private final FenwickTree weekAccepts = new FenwickTree(16);
+    private final FenwickTree weekDeclines = new FenwickTree(16);
+    /** Local day and week stored at index 0 of the day and week trees. */
+    private int firstDay;
+    private int firstWeek;
+    private boolean empty = true;
+    private int untimed;
+
+    public AnalyticsCube(TimeZone zone) {
+        this.zone = zone;
+    }
+
+    public void add(long timestampMillis, byte op) {
+        if (op != OrderJournal.OP_ACCEPT && op != OrderJournal.OP_DECLINE) {
+            return;
+        }
+        if (timestampMillis == 0L) {
+            untimed++;
+            return;
+        }
+        boolean accepted = op == OrderJournal.OP_ACCEPT;
+        long local = timestampMillis + zone.getOffset(timestampMillis);
+        int day = EventArchive.epochDay(local);
+        int hour = (int) ((local - day * EventArchive.MILLIS_PER_DAY) / MILLIS_PER_HOUR);
+        int week = weekOf(day);
+        if (empty) {
+            firstDay = day;
+            firstWeek = week;
+            empty = false;
+        } else if (day < firstDay) {
+            // Only a clock set backwards gets here.
+            dayAccepts.shift(firstDay - day);
+            dayDeclines.shift(firstDay - day);
+            firstDay = day;
+            if (week < firstWeek) {
+                weekAccepts.shift(firstWeek - week);
+                weekDeclines.shift(firstWeek - week);
+                firstWeek = week;
+            }
+        }
+
+        (accepted ? hourAccepts : hourDeclines).add(weekdayOf(day) * HOURS + hour, 1);
+        (accepted ? dayAccepts : dayDeclines).add(day - firstDay, 1);
+        (accepted ? weekAccepts : weekDeclines).add(week - firstWeek, 1);
+    }
+
+    /** Adds events {@code [from, to)} of {@code events}. */
+    public void addAll(EventStore events, int from, int to) {
+        for (int i = from; i < to; i++) {
+            add(events.timestamp(i), events.op(i));
+        }
+    }
+
+    /** Decisions logged without a time, which no bucket counts. */
+    public int untimedCount() {
+        return untimed;
+    }
+
+    /** Local epoch day of {@code millis}. */
+    public int dayOf(long millis) {
+        return EventArchive.epochDay(millis + zone.getOffset(millis));
+    }
+
+    /** Day of the week of local epoch day {@code day}, 0 being Monday. */
+    public static int weekdayOf(int day) {
+        int weekday = (day + EPOCH_WEEKDAY) % WEEKDAYS;
+        return weekday < 0 ? weekday + WEEKDAYS : weekday;
+    }
+
+    /** Index of the Monday-based week holding local epoch day {@code day}. */
+    public static int weekOf(int day) {
+        // Mondays are the days with (day + EPOCH_WEEKDAY) a multiple of seven.
+        return (day - weekdayOf(day) + EPOCH_WEEKDAY) / WEEKDAYS;
+    }
+
+    /** Counts the decisions made in local hours {@code [fromHour, toHour)} of {@code weekday}. */
+    public void countHours(int weekday, int fromHour, int toHour, int[] counts) {
+        int base = weekday * HOURS;
+        counts[0] = hourAccepts.sum(base + fromHour, base + toHour);
+        counts[1] = hourDeclines.sum(base + fromHour, base + toHour);
+    }
+
+    public void countWeekday(int weekday, int[] counts) {
+        countHours(weekday, 0, HOURS, counts);
+    }
+
+    /** Counts the decisions made during {@code shift} on any day. */
+    public void countShift(int shift, int[] counts) {
+        int from = SHIFT_START_HOURS[shift];
+        int to = SHIFT_START_HOURS[(shift + 1) % SHIFTS];
+        int accepts = 0;
+        int declines = 0;
+        for (int weekday = 0; weekday < WEEKDAYS; weekday++) {
+            int base = weekday * HOURS;
+            if (from < to) {
+                accepts += hourAccepts.sum(base + from, base + to);
+                declines += hourDeclines.sum(base + from, base + to);
+            } else {
+                accepts += hourAccepts.sum(base + from, base + HOURS) + hourAccepts.sum(base, base + to);
+                declines += hourDeclines.sum(base + from, base + HOURS) + hourDeclines.sum(base, base + to);
+            }
+        }
+        counts[0] = accepts;
+        counts[1] = declines;
+    }
+
+    /** Counts the decisions made on local days {@code [fromDay, toDay)}. */
+    public void countDays(int fromDay, int toDay, int[] counts) {
+        counts[0] = empty ? 0 : dayAccepts.sum(fromDay - firstDay, toDay - firstDay);
+        counts[1] = empty ? 0 : dayDeclines.sum(fromDay - firstDay, toDay - firstDay);
+    }
+
+    /** Counts the decisions made in weeks {@code [fromWeek, toWeek)}, see {@link #weekOf(int)}. */
+    public void countWeeks(int fromWeek, int toWeek, int[] counts) {
+        counts[0] = empty ? 0 : weekAccepts.sum(fromWeek - firstWeek, toWeek - firstWeek);
+        counts[1] = empty ? 0 : weekDeclines.sum(fromWeek - firstWeek, toWeek - firstWeek);
+    }
+}
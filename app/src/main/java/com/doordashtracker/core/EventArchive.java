@@ -0,0 +1,167 @@
+package com.doordashtracker.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only, memory-mapped view of the event archive written by
+ * {@link OrderJournal}, with a per-day index for seeking by time.
+ *
+ * Opening only maps the files, so it costs the same whatever their size, and a
+ * query only faults in the pages of the records it reads. The view covers the
+ * records archived when it was opened; later compactions append past it.
+ *
+ * <pre>
+ * events.bin: archived generation (8) | record count (8) | records
+ * days.idx:   entries of UTC epoch day (4) | index of its first record (8)
+ * </pre>
+ *
+ * The day index has an entry for every UTC day that starts a run of records,
+ * in record order. Times are assumed not to go backwards by more than a
+ * day-boundary; a record written after a backwards clock jump is found under
+ * the day it was appended in. Reads use absolute offsets only, so any number
+ * of threads may query one instance.
+ */
+public final class EventArchive {
+
+    static final String FILE = "events.bin";
+    static final String INDEX_FILE = "days.idx";
+    static final int HEADER_LENGTH = 16;
+    static final int INDEX_ENTRY_LENGTH = 12;
+
+    static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+    private static final int RECORD_LENGTH = OrderJournal.RECORD_LENGTH;
+
+    private final ByteBuffer records;
+    private final int size;
+    private final ByteBuffer index;
+    private final int indexEntries;
+
+    private EventArchive(ByteBuffer records, int size, ByteBuffer index, int indexEntries) {
+        this.records = records;
+        this.size = size;
+        this.index = index;
+        this.indexEntries = indexEntries;
+    }
+
+    static EventArchive empty() {
+        return new EventArchive(ByteBuffer.allocate(0), 0, ByteBuffer.allocate(0), 0);
+    }
+
+    /** Maps the first {@code recordCount} archived records and their day index. */
+    static EventArchive map(File directory, int recordCount) throws IOException {
+        if (recordCount == 0) {
+            return empty();
+        }
+        ByteBuffer records = mapReadOnly(new File(directory, FILE), HEADER_LENGTH + (long) recordCount * RECORD_LENGTH);
+
+        File indexFile = new File(directory, INDEX_FILE);
+        long indexLength = indexFile.length() - indexFile.length() % INDEX_ENTRY_LENGTH;
+        ByteBuffer index = indexLength == 0 ? ByteBuffer.allocate(0) : mapReadOnly(indexFile, indexLength);
+        // Entries past the records counted in the header come from an interrupted compaction.
+        int entries = (int) (indexLength / INDEX_ENTRY_LENGTH);
+        while (entries > 0 && index.getLong((entries - 1) * INDEX_ENTRY_LENGTH + 4) >= recordCount) {
+            entries--;
+        }
+        return new EventArchive(records, recordCount, index, entries);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long timestamp(int i) {
+        return records.getLong(offset(i) + 4);
+    }
+
+    public byte op(int i) {
+        return records.get(offset(i));
+    }
+
+    public byte source(int i) {
+        return records.get(offset(i) + 1);
+    }
+
+    /**
+     * Index of the first record at or after {@code millis}, or {@link #size()}
+     * if there is none. Reads the day index and then only the records of the
+     * day containing {@code millis}.
+     */
+    public int firstIndexAtOrAfter(long millis) {
+        if (size == 0) {
+            return 0;
+        }
+        int day = epochDay(millis);
+        // Last index entry whose day is at or before the target day.
+        int lo = 0;
+        int hi = indexEntries - 1;
+        int entry = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (indexDay(mid) <= day) {
+                entry = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (entry < 0) {
+            return indexEntries == 0 ? searchRecords(0, size, millis) : 0;
+        }
+        int from = (int) indexFirst(entry);
+        int to = entry + 1 < indexEntries ? (int) indexFirst(entry + 1) : size;
+        if (indexDay(entry) < day) {
+            // The target day has no records; everything from the next entry on is later.
+            return to;
+        }
+        return searchRecords(from, to, millis);
+    }
+
+    public static int epochDay(long millis) {
+        long day = millis / MILLIS_PER_DAY;
+        if (millis < 0 && day * MILLIS_PER_DAY != millis) {
+            day--;
+        }
+        return (int) day;
+    }
+
+    private int searchRecords(int from, int to, long millis) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (timestamp(mid) < millis) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return from;
+    }
+
+    private int indexDay(int entry) {
+        return index.getInt(entry * INDEX_ENTRY_LENGTH);
+    }
+
+    private long indexFirst(int entry) {
+        return index.getLong(entry * INDEX_ENTRY_LENGTH + 4);
+    }
+
+    private int offset(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("index " + i + ", size " + size);
+        }
+        return HEADER_LENGTH + i * RECORD_LENGTH;
+    }
+
+    private static ByteBuffer mapReadOnly(File file, long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } finally {
+            // The mapping stays valid after the channel is closed.
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.doordashtracker.core;
+
+import java.util.Arrays;
+
+/**
+ * Every order decision ever logged: a timestamp, an {@link OrderJournal} op and
+ * a source byte per event. Events already archived when the store was opened
+ * are read from the memory-mapped {@link EventArchive}; newer ones are kept
+ * column-wise in chunked primitive arrays, about 10 bytes each with no
+ * per-event objects. Chunks are never moved once allocated, so growing the
+ * store does not copy old events.
+ *
+ * One thread appends; any thread may read the events below {@link #size()}
+ * without locking. The size is published with a volatile write after the event
+ * itself, so a reader never sees a partly written event.
+ */
+public final class EventStore {
+
+    public static final byte SOURCE_UNKNOWN = 0;
+    public static final byte SOURCE_APP = 1;
+    public static final byte SOURCE_OVERLAY = 2;
+    public static final byte SOURCE_WIDGET = 3;
+    public static final byte SOURCE_TILE = 4;
+    /** Recognized in the Dasher app by {@code OfferCaptureService}. */
+    public static final byte SOURCE_CAPTURE = 5;
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final EventArchive archive;
+    private final int archived;
+    private long[][] timestamps = new long[16][];
+    private byte[][] ops = new byte[16][];
+    private byte[][] sources = new byte[16][];
+    /** Number of events in memory, after the archived ones. */
+    private volatile int size;
+
+    public EventStore() {
+        this(EventArchive.empty());
+    }
+
+    public EventStore(EventArchive archive) {
+        this.archive = archive;
+        archived = archive.size();
+    }
+
+    public void append(long timestampMillis, byte op, byte source) {
+        int index = size;
+        int chunk = index >>> CHUNK_BITS;
+        if (chunk == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, chunk * 2);
+            ops = Arrays.copyOf(ops, chunk * 2);
+            sources = Arrays.copyOf(sources, chunk * 2);
+        }
+        if (timestamps[chunk] == null) {
+            timestamps[chunk] = new long[CHUNK_SIZE];
+            ops[chunk] = new byte[CHUNK_SIZE];
+            sources[chunk] = new byte[CHUNK_SIZE];
+        }
+        int offset = index & CHUNK_MASK;
+        timestamps[chunk][offset] = timestampMillis;
+        ops[chunk][offset] = op;
+        sources[chunk][offset] = source;
+        size = index + 1;
+    }
+
+    public int size() {
+        return archived + size;
+    }
+
+    /** Epoch millis of event {@code index}, or 0 if it was imported without one. */
+    public long timestamp(int index) {
+        if (index < archived) {
+            return archive.timestamp(index);
+        }
+        int i = checkIndex(index);
+        return timestamps[i >>> CHUNK_BITS][i & CHUNK_MASK];
+    }
+
+    public byte op(int index) {
+        if (index < archived) {
+            return archive.op(index);
+        }
+        int i = checkIndex(index);
+        return ops[i >>> CHUNK_BITS][i & CHUNK_MASK];
+    }
+
+    public byte source(int index) {
+        if (index < archived) {
+            return archive.source(index);
+        }
+        int i = checkIndex(index);
+        return sources[i >>> CHUNK_BITS][i & CHUNK_MASK];
+    }
+
+    /**
+     * Index of the first event at or after {@code millis}, or {@link #size()}
+     * if there is none. Seeks through the archive's day index, so only the
+     * records around {@code millis} are read.
+     */
+    public int firstIndexAtOrAfter(long millis) {
+        int end = size;
+        if (archived > 0 && (end == 0 || millis <= timestamp(archived))) {
+            int found = archive.firstIndexAtOrAfter(millis);
+            if (found < archived) {
+                return found;
+            }
+        }
+        int lo = archived;
+        int hi = archived + end;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (timestamp(mid) < millis) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Counts the accepts and declines made in {@code [fromMillis, toMillis)}
+     * into {@code counts[0]} and {@code counts[1]}, reading only that range.
+     */
+    public void countDecisions(long fromMillis, long toMillis, int[] counts) {
+        counts[0] = 0;
+        counts[1] = 0;
+        int end = size();
+        for (int i = firstIndexAtOrAfter(fromMillis); i < end; i++) {
+            if (timestamp(i) >= toMillis) {
+                break;
+            }
+            byte op = op(i);
+            if (op == OrderJournal.OP_ACCEPT) {
+                counts[0]++;
+            } else if (op == OrderJournal.OP_DECLINE) {
+                counts[1]++;
+            }
+        }
+    }
+
+    /**
+     * Replaces the contents of {@code window} with the newest decisions that
+     * fit, stopping at the most recent reset. Returns the index of the first
+     * event replayed.
+     */
+    public int fillWindow(AcceptanceWindow window) {
+        int end = size();
+        int start = decisionsStart(window.capacity());
+        window.clear();
+        for (int i = start; i < end; i++) {
+            window.add(opAt(i) == OrderJournal.OP_ACCEPT);
+        }
+        return start;
+    }
+
+    /**
+     * Index of the first of the newest {@code decisions} events, or of the first
+     * event after the most recent reset if there are fewer since then.
+     */
+    public int decisionsStart(int decisions) {
+        int start = size();
+        int counted = 0;
+        while (start > 0 && counted < decisions) {
+            if (opAt(start - 1) == OrderJournal.OP_RESET) {
+                break;
+            }
+            start--;
+            counted++;
+        }
+        return start;
+    }
+
+    private byte opAt(int index) {
+        if (index < archived) {
+            return archive.op(index);
+        }
+        int i = index - archived;
+        return ops[i >>> CHUNK_BITS][i & CHUNK_MASK];
+    }
+
+    /** Returns the in-memory position of {@code index}. */
+    private int checkIndex(int index) {
+        int i = index - archived;
+        if (index < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size());
+        }
+        return i;
+    }
+}
@@ -0,0 +1,77 @@
+package com.doordashtracker.core;
+
+import java.util.Arrays;
+
+/**
+ * Binary indexed tree of int counters: point updates and range sums in
+ * O(log n). Grows on demand, so an index past the end is never an error for
+ * {@link #add(int, int)} and reads as zero everywhere else.
+ */
+final class FenwickTree {
+
+    /** 1-based; {@code tree[i]} holds the sum of the values in {@code (i - lowbit(i), i]}. */
+    private int[] tree;
+
+    FenwickTree(int capacity) {
+        tree = new int[Math.max(1, capacity) + 1];
+    }
+
+    int capacity() {
+        return tree.length - 1;
+    }
+
+    void add(int index, int delta) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("index " + index);
+        }
+        if (index >= capacity()) {
+            rebuild(0, Math.max(index + 1, capacity() * 2));
+        }
+        for (int i = index + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /** Sum of the values at {@code [from, to)}. */
+    int sum(int from, int to) {
+        from = Math.max(0, from);
+        to = Math.min(to, capacity());
+        return from >= to ? 0 : prefix(to) - prefix(from);
+    }
+
+    /** Moves every value up by {@code count} indices, leaving zeros below them. */
+    void shift(int count) {
+        rebuild(count, capacity() + count);
+    }
+
+    private int prefix(int end) {
+        int sum = 0;
+        for (int i = end; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /** Rebuilds with {@code offset} leading zeros in linear time. */
+    private void rebuild(int offset, int capacity) {
+        int size = capacity();
+        // Undo the linear-time construction below to recover the plain values.
+        int[] values = Arrays.copyOf(tree, tree.length);
+        for (int i = size; i > 0; i--) {
+            int parent = i + (i & -i);
+            if (parent <= size) {
+                values[parent] -= values[i];
+            }
+        }
+
+        int[] grown = new int[capacity + 1];
+        System.arraycopy(values, 1, grown, 1 + offset, size);
+        for (int i = 1; i <= capacity; i++) {
+            int parent = i + (i & -i);
+            if (parent <= capacity) {
+                grown[parent] += grown[i];
+            }
+        }
+        tree = grown;
+    }
+}
@@ -0,0 +1,186 @@
+package com.doordashtracker.core;
+
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot format for an {@link AcceptanceWindow}.
+ *
+ * <pre>
+ * offset  size  field
+ *      0     2  magic 'A' 'R'
+ *      2     1  format version
+ *      3     1  reserved, 0
+ *      4     4  capacity
+ *      8     4  size
+ *     12     4  ring head
+ *     16     n  ring bits, ceil(capacity / 8) bytes, slot 0 in the low bit of byte 0
+ *   16+n     4  CRC32 of bytes [0, 16+n)
+ * </pre>
+ *
+ * All integers are big-endian. The ring is stored exactly as it sits in memory,
+ * so encoding and decoding are straight byte copies without re-ordering entries.
+ */
+public final class HistoryCodec {
+
+    public static final int VERSION = 1;
+
+    private static final byte MAGIC_0 = 'A';
+    private static final byte MAGIC_1 = 'R';
+    private static final int HEADER_LENGTH = 16;
+    private static final int CHECKSUM_LENGTH = 4;
+
+    private HistoryCodec() {
+    }
+
+    public static int encodedLength(AcceptanceWindow window) {
+        return HEADER_LENGTH + ((window.capacity() + 7) >>> 3) + CHECKSUM_LENGTH;
+    }
+
+    public static byte[] encode(AcceptanceWindow window) {
+        byte[] out = new byte[encodedLength(window)];
+        encode(window, out, 0);
+        return out;
+    }
+
+    /** Writes {@code window} into {@code out} at {@code offset} and returns the number of bytes written. */
+    public static int encode(AcceptanceWindow window, byte[] out, int offset) {
+        int length = encodedLength(window);
+        if (out.length - offset < length) {
+            throw new IllegalArgumentException("buffer too small: need " + length + " bytes");
+        }
+
+        out[offset] = MAGIC_0;
+        out[offset + 1] = MAGIC_1;
+        out[offset + 2] = VERSION;
+        out[offset + 3] = 0;
+        writeInt(out, offset + 4, window.capacity());
+        writeInt(out, offset + 8, window.size());
+        writeInt(out, offset + 12, window.head());
+
+        int bitBytes = (window.capacity() + 7) >>> 3;
+        int pos = offset + HEADER_LENGTH;
+        for (int i = 0; i < bitBytes; i++) {
+            out[pos + i] = (byte) (window.rawWord(i >>> 3) >>> ((i & 7) << 3));
+        }
+        pos += bitBytes;
+
+        CRC32 crc = new CRC32();
+        crc.update(out, offset, pos - offset);
+        writeInt(out, pos, (int) crc.getValue());
+        return length;
+    }
+
+    /**
+     * Window capacity recorded in the snapshot in {@code data}, for sizing a
+     * target that holds all of it. The snapshot itself is checked by
+     * {@link #decode}.
+     */
+    public static int decodedCapacity(byte[] data, int offset, int length) {
+        if (length < HEADER_LENGTH || data[offset] != MAGIC_0 || data[offset + 1] != MAGIC_1) {
+            throw new IllegalArgumentException("not an order history snapshot");
+        }
+        int capacity = readInt(data, offset + 4);
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("corrupt snapshot header");
+        }
+        return capacity;
+    }
+
+    /**
+     * Replaces the contents of {@code target} with the snapshot in {@code data}.
+     * When the stored capacity differs from the target's, the newest entries that
+     * fit are replayed in order.
+     *
+     * @throws IllegalArgumentException if the data is truncated, corrupt or of an unknown version
+     */
+    public static void decode(byte[] data, int offset, int length, AcceptanceWindow target) {
+        if (length < HEADER_LENGTH + CHECKSUM_LENGTH
+                || data[offset] != MAGIC_0 || data[offset + 1] != MAGIC_1) {
+            throw new IllegalArgumentException("not an order history snapshot");
+        }
+        int version = data[offset + 2] & 0xFF;
+        if (version != VERSION) {
+            throw new IllegalArgumentException("unsupported snapshot version " + version);
+        }
+
+        int capacity = readInt(data, offset + 4);
+        int size = readInt(data, offset + 8);
+        int head = readInt(data, offset + 12);
+        if (capacity <= 0 || size < 0 || size > capacity || head < 0 || head >= capacity) {
+            throw new IllegalArgumentException("corrupt snapshot header");
+        }
+
+        int bitBytes = (capacity + 7) >>> 3;
+        int body = HEADER_LENGTH + bitBytes;
+        if (length < body + CHECKSUM_LENGTH) {
+            throw new IllegalArgumentException("truncated snapshot");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, offset, body);
+        if ((int) crc.getValue() != readInt(data, offset + body)) {
+            throw new IllegalArgumentException("snapshot checksum mismatch");
+        }
+
+        if (capacity == target.capacity()) {
+            readBits(data, offset + HEADER_LENGTH, bitBytes, target);
+            target.restore(head, size);
+            return;
+        }
+
+        AcceptanceWindow stored = new AcceptanceWindow(capacity);
+        readBits(data, offset + HEADER_LENGTH, bitBytes, stored);
+        stored.restore(head, size);
+
+        target.clear();
+        for (int i = Math.max(0, size - target.capacity()); i < size; i++) {
+            target.add(stored.get(i));
+        }
+    }
+
+    /**
+     * Replaces the contents of {@code target} with a legacy comma-separated
+     * {@code "1,0,1"} history, where any token other than {@code "1"} is a decline.
+     */
+    public static void decodeLegacy(String csv, AcceptanceWindow target) {
+        target.clear();
+
+        // String.split drops trailing empty tokens, and so does this.
+        int end = csv.length();
+        while (end > 0 && csv.charAt(end - 1) == ',') {
+            end--;
+        }
+
+        int tokenStart = 0;
+        for (int i = 0; end > 0 && i <= end; i++) {
+            if (i == end || csv.charAt(i) == ',') {
+                target.add(i - tokenStart == 1 && csv.charAt(tokenStart) == '1');
+                tokenStart = i + 1;
+            }
+        }
+    }
+
+    private static void readBits(byte[] data, int pos, int bitBytes, AcceptanceWindow target) {
+        for (int word = 0; word < target.rawWordCount(); word++) {
+            long value = 0L;
+            int end = Math.min(bitBytes, (word + 1) << 3);
+            for (int i = word << 3; i < end; i++) {
+                value |= (data[pos + i] & 0xFFL) << ((i & 7) << 3);
+            }
+            target.setRawWord(word, value);
+        }
+    }
+
+    private static void writeInt(byte[] out, int pos, int value) {
+        out[pos] = (byte) (value >>> 24);
+        out[pos + 1] = (byte) (value >>> 16);
+        out[pos + 2] = (byte) (value >>> 8);
+        out[pos + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] data, int pos) {
+        return ((data[pos] & 0xFF) << 24)
+                | ((data[pos + 1] & 0xFF) << 16)
+                | ((data[pos + 2] & 0xFF) << 8)
+                | (data[pos + 3] & 0xFF);
+    }
+}
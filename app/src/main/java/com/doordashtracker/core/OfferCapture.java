@@ -0,0 +1,237 @@
+package com.doordashtracker.core;
+
+/**
+ * Recognizes offers being accepted or declined in the Dasher app from the
+ * accessibility events it sends. An offer counts as showing once a scan of the
+ * window finds both its Accept and Decline buttons; a click on either while it
+ * shows is the decision. Each offer is counted once.
+ *
+ * Events are rejected on package and type before anything else is looked at,
+ * window scans are rate limited and stop at {@link #MAX_DEPTH} and
+ * {@link #MAX_NODES}, and every node obtained from an {@link Event} or a
+ * {@link Node} is recycled before the next one is fetched. Nothing here
+ * depends on Android, so recorded event streams can be replayed on the JVM.
+ * A content change skipped by the rate limit is remembered, and the window is
+ * scanned at the next click if no later change caught up with it, so an offer
+ * that appears in the last change before the click is not missed.
+ * Not thread-safe; feed it from one thread.
+ */
+public final class OfferCapture {
+
+    /** Decisions returned by {@link #onEvent}. */
+    public static final int DECISION_NONE = 0;
+    public static final int DECISION_ACCEPT = 1;
+    public static final int DECISION_DECLINE = 2;
+
+    // Same values as the AccessibilityEvent constants.
+    public static final int TYPE_VIEW_CLICKED = 0x00000001;
+    public static final int TYPE_WINDOW_STATE_CHANGED = 0x00000020;
+    public static final int TYPE_WINDOW_CONTENT_CHANGED = 0x00000800;
+    public static final int EVENT_TYPES = TYPE_VIEW_CLICKED | TYPE_WINDOW_STATE_CHANGED | TYPE_WINDOW_CONTENT_CHANGED;
+
+    public static final String DASHER_PACKAGE = "com.doordash.driverapp";
+
+    static final int MAX_DEPTH = 12;
+    static final int MAX_NODES = 120;
+    /** Content changes arrive in bursts; rescan at most this often. */
+    static final long MIN_SCAN_INTERVAL_MILLIS = 500;
+    /** An offer not seen in a scan for this long is treated as gone. */
+    static final long OFFER_TIMEOUT_MILLIS = 3 * 60 * 1000L;
+    /** Scans are skipped this long after a decision, while the offer animates away. */
+    static final long DECISION_COOLDOWN_MILLIS = 2000;
+
+    private static final String ACCEPT_LABEL = "Accept";
+    private static final String DECLINE_LABEL = "Decline";
+    private static final int FOUND_ACCEPT = 1;
+    private static final int FOUND_DECLINE = 2;
+
+    /** One accessibility event. Only valid during the {@link #onEvent} call it is passed to. */
+    public interface Event {
+        CharSequence packageName();
+
+        int type();
+
+        /** Monotonic time of the event. */
+        long timeMillis();
+
+        int textCount();
+
+        CharSequence text(int index);
+
+        /** The view the event came from, or null. The caller of this method recycles it. */
+        Node source();
+
+        /** The root of the window showing, or null. The caller of this method recycles it. */
+        Node windowRoot();
+    }
+
+    /** An accessibility node. */
+    public interface Node {
+        /** The node's text, or its content description if it has none. May be null. */
+        CharSequence label();
+
+        int childCount();
+
+        /** The child at {@code index}, or null. The caller of this method recycles it. */
+        Node child(int index);
+
+        void recycle();
+    }
+
+    private boolean offerShowing;
+    private long offerSeenMillis;
+    private long lastScanMillis = Long.MIN_VALUE / 2;
+    private long lastDecisionMillis = Long.MIN_VALUE / 2;
+    /** Whether a content change was skipped since the last scan. */
+    private boolean rescanPending;
+    private int scanFound;
+    private int scanVisited;
+
+    /** Whether an event of {@code type} from {@code packageName} could matter at all. */
+    public static boolean accepts(CharSequence packageName, int type) {
+        return (type & EVENT_TYPES) != 0 && packageName != null && DASHER_PACKAGE.contentEquals(packageName);
+    }
+
+    /** @return one of the {@code DECISION_} constants */
+    public int onEvent(Event event) {
+        int type = event.type();
+        if (!accepts(event.packageName(), type)) {
+            return DECISION_NONE;
+        }
+        long now = event.timeMillis();
+        if (type == TYPE_VIEW_CLICKED) {
+            return onClick(event, now);
+        }
+        if (type == TYPE_WINDOW_CONTENT_CHANGED && now - lastScanMillis < MIN_SCAN_INTERVAL_MILLIS) {
+            rescanPending = true;
+            return DECISION_NONE;
+        }
+        if (now - lastDecisionMillis < DECISION_COOLDOWN_MILLIS) {
+            return DECISION_NONE;
+        }
+        scanWindow(event, now);
+        return DECISION_NONE;
+    }
+
+    /** Whether the last scan found an offer on screen. */
+    public boolean isOfferShowing() {
+        return offerShowing;
+    }
+
+    public void reset() {
+        offerShowing = false;
+        rescanPending = false;
+        lastScanMillis = Long.MIN_VALUE / 2;
+        lastDecisionMillis = Long.MIN_VALUE / 2;
+    }
+
+    private int onClick(Event event, long now) {
+        if (!offerShowing && rescanPending && now - lastDecisionMillis >= DECISION_COOLDOWN_MILLIS) {
+            scanWindow(event, now);
+        }
+        if (!offerShowing) {
+            return DECISION_NONE;
+        }
+        if (now - offerSeenMillis > OFFER_TIMEOUT_MILLIS) {
+            offerShowing = false;
+            return DECISION_NONE;
+        }
+        int found = 0;
+        for (int i = 0, n = event.textCount(); i < n; i++) {
+            found |= match(event.text(i));
+        }
+        if (event.textCount() == 0) {
+            // Clicks on a container carry no text; only its own label is checked.
+            Node source = event.source();
+            if (source != null) {
+                try {
+                    found = match(source.label());
+                } finally {
+                    source.recycle();
+                }
+            }
+        }
+        if (found != FOUND_ACCEPT && found != FOUND_DECLINE) {
+            return DECISION_NONE;
+        }
+        offerShowing = false;
+        lastDecisionMillis = now;
+        return found == FOUND_ACCEPT ? DECISION_ACCEPT : DECISION_DECLINE;
+    }
+
+    private void scanWindow(Event event, long now) {
+        lastScanMillis = now;
+        rescanPending = false;
+        Node root = event.windowRoot();
+        if (root == null) {
+            return;
+        }
+        scanFound = 0;
+        scanVisited = 0;
+        try {
+            scan(root, 0);
+        } finally {
+            root.recycle();
+        }
+        offerShowing = scanFound == (FOUND_ACCEPT | FOUND_DECLINE);
+        if (offerShowing) {
+            offerSeenMillis = now;
+        }
+    }
+
+    private void scan(Node node, int depth) {
+        scanVisited++;
+        scanFound |= match(node.label());
+        if (depth == MAX_DEPTH) {
+            return;
+        }
+        for (int i = 0, n = node.childCount(); i < n; i++) {
+            if (scanFound == (FOUND_ACCEPT | FOUND_DECLINE) || scanVisited >= MAX_NODES) {
+                return;
+            }
+            Node child = node.child(i);
+            if (child == null) {
+                continue;
+            }
+            try {
+                scan(child, depth + 1);
+            } finally {
+                child.recycle();
+            }
+        }
+    }
+
+    private static int match(CharSequence label) {
+        if (label == null) {
+            return 0;
+        }
+        if (labelEquals(label, ACCEPT_LABEL)) {
+            return FOUND_ACCEPT;
+        }
+        if (labelEquals(label, DECLINE_LABEL)) {
+            return FOUND_DECLINE;
+        }
+        return 0;
+    }
+
+    /** Compares ignoring case and surrounding whitespace, without allocating. */
+    private static boolean labelEquals(CharSequence label, String expected) {
+        int start = 0;
+        int end = label.length();
+        while (start < end && Character.isWhitespace(label.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(label.charAt(end - 1))) {
+            end--;
+        }
+        if (end - start != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (Character.toLowerCase(label.charAt(start + i)) != Character.toLowerCase(expected.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,495 @@
+package com.doordashtracker.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Append-only on-disk log of every order decision.
+ *
+ * Each decision is one {@link #RECORD_LENGTH}-byte record appended to the
+ * current journal generation ({@code journal-<n>.log}). Compaction rotates to a
+ * new generation and moves the records of the finished generations to the end
+ * of the event archive, which keeps the full history and is read through a
+ * memory-mapped {@link EventArchive}.
+ *
+ * <pre>
+ * record:  op (1) | source (1) | reserved (2) | timestamp millis (8)
+ * </pre>
+ *
+ * The archive header is only rewritten after the records it counts, and their
+ * day index entries, are synced, so bytes past the counted records are a
+ * compaction interrupted by a crash and are dropped; the journals they came
+ * from are still on disk. Instances are not thread-safe.
+ *
+ * {@link #countRecords()} and {@link #appendDetached} work on a directory no
+ * journal has open, for logging a decision without loading the history.
+ */
+public final class OrderJournal implements Closeable {
+
+    public static final int RECORD_LENGTH = 12;
+
+    public static final byte OP_ACCEPT = 1;
+    public static final byte OP_DECLINE = 2;
+    public static final byte OP_RESET = 3;
+
+    private static final String ARCHIVE_FILE = EventArchive.FILE;
+    /** Written by versions that kept only the rolling window. */
+    private static final String LEGACY_SNAPSHOT_FILE = "snapshot.bin";
+    private static final String INDEX_FILE = EventArchive.INDEX_FILE;
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static final int ARCHIVE_HEADER_LENGTH = EventArchive.HEADER_LENGTH;
+    private static final int INDEX_ENTRY_LENGTH = EventArchive.INDEX_ENTRY_LENGTH;
+    private static final int LEGACY_SNAPSHOT_HEADER_LENGTH = 8;
+
+    private final File directory;
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(RECORD_LENGTH);
+    private FileChannel channel;
+    private long generation;
+    private long archivedGeneration;
+    private long archivedRecords;
+    private long indexEntries;
+    private int lastIndexedDay;
+    private int pendingRecords;
+
+    public OrderJournal(File directory) {
+        this.directory = directory;
+    }
+
+    /** Returns true if nothing has been written yet. */
+    public boolean isEmpty() {
+        return !new File(directory, ARCHIVE_FILE).exists()
+                && !new File(directory, LEGACY_SNAPSHOT_FILE).exists()
+                && listGenerations().length == 0;
+    }
+
+    /**
+     * Maps the archive, replays every newer journal generation on top of it and
+     * opens a fresh generation for appending. Returns the full history.
+     */
+    public EventStore open() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create " + directory);
+        }
+
+        readArchiveHeader();
+        if (archivedRecords > Integer.MAX_VALUE) {
+            throw new IOException("archive too large: " + archivedRecords + " records");
+        }
+        EventStore events = new EventStore(EventArchive.map(directory, (int) archivedRecords));
+        if (readIndex(events)) {
+            // Map again so queries can use the index that was just written.
+            events = new EventStore(EventArchive.map(directory, (int) archivedRecords));
+        }
+
+        long newest = archivedGeneration;
+        pendingRecords = 0;
+        for (long gen : listGenerations()) {
+            File file = journalFile(gen);
+            if (gen <= archivedGeneration || file.length() == 0) {
+                file.delete();
+                continue;
+            }
+            pendingRecords += replay(readFully(file), events, file);
+            newest = Math.max(newest, gen);
+        }
+
+        generation = newest + 1;
+        channel = openForAppend(journalFile(generation));
+        return events;
+    }
+
+    public void append(byte op, byte source, long timestampMillis) throws IOException {
+        recordBuffer.clear();
+        putRecord(recordBuffer, op, source, timestampMillis);
+        recordBuffer.flip();
+        write(channel, recordBuffer);
+        pendingRecords++;
+    }
+
+    /** Appends the first {@code count} records with a single write. */
+    public void append(byte[] ops, byte[] sources, long[] timestampsMillis, int count) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        ByteBuffer batch = count == 1 ? recordBuffer : ByteBuffer.allocate(count * RECORD_LENGTH);
+        batch.clear();
+        for (int i = 0; i < count; i++) {
+            putRecord(batch, ops[i], sources[i], timestampsMillis[i]);
+        }
+        batch.flip();
+        write(channel, batch);
+        pendingRecords += count;
+    }
+
+    /**
+     * Number of records {@link #open()} would load, found from the archive
+     * header and the journal lengths without opening anything. Returns -1 if
+     * the history of an older version still has to be imported first.
+     */
+    public long countRecords() throws IOException {
+        File archive = new File(directory, ARCHIVE_FILE);
+        long gen = 0L;
+        long count = 0L;
+        if (archive.exists() && archive.length() >= ARCHIVE_HEADER_LENGTH) {
+            ByteBuffer header = readHeader(archive);
+            gen = header.getLong(0);
+            count = header.getLong(8);
+        } else if (new File(directory, LEGACY_SNAPSHOT_FILE).exists()) {
+            return -1L;
+        }
+        for (long journalGen : listGenerations()) {
+            if (journalGen > gen) {
+                count += journalFile(journalGen).length() / RECORD_LENGTH;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes one record as a journal generation of its own and syncs it, for
+     * the next {@link #open()} to replay. Only for when no journal on this
+     * directory is open, in this process or any other.
+     */
+    public void appendDetached(byte op, byte source, long timestampMillis) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create " + directory);
+        }
+        File archive = new File(directory, ARCHIVE_FILE);
+        long newest = archive.exists() && archive.length() >= ARCHIVE_HEADER_LENGTH
+                ? readHeader(archive).getLong(0) : 0L;
+        for (long gen : listGenerations()) {
+            newest = Math.max(newest, gen);
+        }
+        recordBuffer.clear();
+        putRecord(recordBuffer, op, source, timestampMillis);
+        recordBuffer.flip();
+        FileChannel out = openForAppend(journalFile(newest + 1));
+        try {
+            write(out, recordBuffer);
+            out.force(false);
+        } finally {
+            out.close();
+        }
+    }
+
+    /** Number of records appended since the last compaction. */
+    public int pendingRecords() {
+        return pendingRecords;
+    }
+
+    /** Total number of records in the archive. */
+    public long archivedRecords() {
+        return archivedRecords;
+    }
+
+    /**
+     * Switches appends to a new generation and moves every finished generation
+     * into the archive, indexing any new days.
+     */
+    public void compact() throws IOException {
+        long covered = generation;
+        channel.close();
+        generation = covered + 1;
+        channel = openForAppend(journalFile(generation));
+        pendingRecords = 0;
+
+        RandomAccessFile archive = new RandomAccessFile(new File(directory, ARCHIVE_FILE), "rw");
+        RandomAccessFile index = new RandomAccessFile(new File(directory, INDEX_FILE), "rw");
+        try {
+            FileChannel out = archive.getChannel();
+            FileChannel indexOut = index.getChannel();
+            long count = archivedRecords;
+            long entries = indexEntries;
+            int lastDay = lastIndexedDay;
+            // Anything past the counted records is left over from an interrupted
+            // compaction. The mapped region ends at the counted records, so
+            // truncating here never shrinks a mapping.
+            out.truncate(ARCHIVE_HEADER_LENGTH + count * RECORD_LENGTH);
+            out.position(ARCHIVE_HEADER_LENGTH + count * RECORD_LENGTH);
+            indexOut.truncate(entries * INDEX_ENTRY_LENGTH);
+            indexOut.position(entries * INDEX_ENTRY_LENGTH);
+            ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_LENGTH);
+            for (long gen : listGenerations()) {
+                if (gen > archivedGeneration && gen <= covered) {
+                    byte[] data = readFully(journalFile(gen));
+                    ByteBuffer records = ByteBuffer.wrap(data, 0, data.length - data.length % RECORD_LENGTH);
+                    for (int offset = 0; offset < records.limit(); offset += RECORD_LENGTH) {
+                        int day = EventArchive.epochDay(records.getLong(offset + 4));
+                        if (entries == 0 || day > lastDay) {
+                            entry.clear();
+                            entry.putInt(day).putLong(count + offset / RECORD_LENGTH).flip();
+                            write(indexOut, entry);
+                            entries++;
+                            lastDay = day;
+                        }
+                    }
+                    count += records.limit() / RECORD_LENGTH;
+                    write(out, records);
+                }
+            }
+            out.force(false);
+            indexOut.force(false);
+            writeArchiveHeader(out, covered, count);
+            out.force(false);
+            archivedGeneration = covered;
+            archivedRecords = count;
+            indexEntries = entries;
+            lastIndexedDay = lastDay;
+        } finally {
+            index.close();
+            archive.close();
+        }
+
+        for (long gen : listGenerations()) {
+            if (gen <= covered) {
+                journalFile(gen).delete();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void readArchiveHeader() throws IOException {
+        File file = new File(directory, ARCHIVE_FILE);
+        archivedGeneration = 0L;
+        archivedRecords = 0L;
+        if (!file.exists() || file.length() < ARCHIVE_HEADER_LENGTH) {
+            // A header-less archive is one whose creation crashed; its journals
+            // are still on disk.
+            file.delete();
+            new File(directory, INDEX_FILE).delete();
+            importLegacySnapshot();
+            return;
+        }
+        ByteBuffer header = readHeader(file);
+        long gen = header.getLong(0);
+        long count = header.getLong(8);
+        long available = (file.length() - ARCHIVE_HEADER_LENGTH) / RECORD_LENGTH;
+        if (count < 0 || count > available) {
+            throw new IOException("corrupt archive header in " + file);
+        }
+        archivedGeneration = gen;
+        archivedRecords = count;
+    }
+
+    /**
+     * Finds where the day index ends, rebuilding it from the archive if it is
+     * missing. Returns true if it was rebuilt.
+     */
+    private boolean readIndex(EventStore events) throws IOException {
+        File file = new File(directory, INDEX_FILE);
+        long entries = file.length() / INDEX_ENTRY_LENGTH;
+        indexEntries = 0;
+        lastIndexedDay = 0;
+        if (entries > 0) {
+            RandomAccessFile index = new RandomAccessFile(file, "r");
+            try {
+                // Drop entries written by a compaction that did not finish.
+                while (entries > 0) {
+                    index.seek((entries - 1) * INDEX_ENTRY_LENGTH);
+                    int day = index.readInt();
+                    long first = index.readLong();
+                    if (first < archivedRecords) {
+                        indexEntries = entries;
+                        lastIndexedDay = day;
+                        break;
+                    }
+                    entries--;
+                }
+            } finally {
+                index.close();
+            }
+        }
+        if (archivedRecords > 0 && indexEntries == 0) {
+            rebuildIndex(events);
+            return true;
+        }
+        return false;
+    }
+
+    /** Writes the day index for archives created before it existed. */
+    private void rebuildIndex(EventStore events) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_LENGTH);
+        RandomAccessFile index = new RandomAccessFile(new File(directory, INDEX_FILE), "rw");
+        try {
+            FileChannel out = index.getChannel();
+            out.truncate(0);
+            long entries = 0;
+            int lastDay = 0;
+            for (int i = 0; i < archivedRecords; i++) {
+                int day = EventArchive.epochDay(events.timestamp(i));
+                if (entries == 0 || day > lastDay) {
+                    entry.clear();
+                    entry.putInt(day).putLong(i).flip();
+                    write(out, entry);
+                    entries++;
+                    lastDay = day;
+                }
+            }
+            out.force(false);
+            indexEntries = entries;
+            lastIndexedDay = lastDay;
+        } finally {
+            index.close();
+        }
+    }
+
+    /**
+     * Turns the window-only snapshot of older versions into untimed events and
+     * writes them as the start of a new archive.
+     */
+    private void importLegacySnapshot() throws IOException {
+        File file = new File(directory, LEGACY_SNAPSHOT_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        byte[] data = readFully(file);
+        if (data.length < LEGACY_SNAPSHOT_HEADER_LENGTH) {
+            throw new IOException("truncated snapshot " + file);
+        }
+        AcceptanceWindow window;
+        try {
+            int offset = LEGACY_SNAPSHOT_HEADER_LENGTH;
+            int length = data.length - offset;
+            window = new AcceptanceWindow(HistoryCodec.decodedCapacity(data, offset, length));
+            HistoryCodec.decode(data, offset, length, window);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("unreadable snapshot " + file, e);
+        }
+        long covered = ByteBuffer.wrap(data).getLong(0);
+
+        int count = window.size();
+        ByteBuffer records = ByteBuffer.allocate(ARCHIVE_HEADER_LENGTH + count * RECORD_LENGTH);
+        records.putLong(covered).putLong(count);
+        for (int i = 0; i < count; i++) {
+            byte op = window.get(i) ? OP_ACCEPT : OP_DECLINE;
+            putRecord(records, op, EventStore.SOURCE_UNKNOWN, 0L);
+        }
+        records.flip();
+
+        File archive = new File(directory, ARCHIVE_FILE);
+        RandomAccessFile out = new RandomAccessFile(archive, "rw");
+        try {
+            out.setLength(0);
+            write(out.getChannel(), records);
+            out.getChannel().force(false);
+        } finally {
+            out.close();
+        }
+        archivedGeneration = covered;
+        archivedRecords = count;
+        file.delete();
+    }
+
+    private static ByteBuffer readHeader(File archive) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(ARCHIVE_HEADER_LENGTH);
+        FileInputStream in = new FileInputStream(archive);
+        try {
+            FileChannel source = in.getChannel();
+            while (header.hasRemaining() && source.read(header) >= 0) {
+                // keep reading
+            }
+        } finally {
+            in.close();
+        }
+        return header;
+    }
+
+    private static void writeArchiveHeader(FileChannel out, long gen, long count) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(ARCHIVE_HEADER_LENGTH);
+        header.putLong(gen).putLong(count).flip();
+        out.position(0);
+        write(out, header);
+    }
+
+    private static void putRecord(ByteBuffer buffer, byte op, byte source, long timestampMillis) {
+        buffer.put(op);
+        buffer.put(source);
+        buffer.putShort((short) 0);
+        buffer.putLong(timestampMillis);
+    }
+
+    private static void write(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static int replay(byte[] data, EventStore events, File file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        // A torn final record from a crash mid-write is ignored.
+        int records = data.length / RECORD_LENGTH;
+        for (int i = 0; i < records; i++) {
+            int offset = i * RECORD_LENGTH;
+            events.append(buffer.getLong(offset + 4), checkOp(data[offset], file), data[offset + 1]);
+        }
+        return records;
+    }
+
+    private static byte checkOp(byte op, File file) throws IOException {
+        if (op != OP_ACCEPT && op != OP_DECLINE && op != OP_RESET) {
+            throw new IOException("unknown journal op " + op + " in " + file);
+        }
+        return op;
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel source = in.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate((int) source.size());
+            while (buffer.hasRemaining() && source.read(buffer) >= 0) {
+                // keep reading
+            }
+            return buffer.array();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static FileChannel openForAppend(File file) throws IOException {
+        FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+        channel.position(channel.size());
+        return channel;
+    }
+
+    private File journalFile(long gen) {
+        return new File(directory, JOURNAL_PREFIX + gen + JOURNAL_SUFFIX);
+    }
+
+    private long[] listGenerations() {
+        String[] names = directory.list();
+        if (names == null) {
+            return new long[0];
+        }
+        long[] generations = new long[names.length];
+        int count = 0;
+        for (String name : names) {
+            if (name.startsWith(JOURNAL_PREFIX) && name.endsWith(JOURNAL_SUFFIX)) {
+                try {
+                    long gen = Long.parseLong(
+                            name.substring(JOURNAL_PREFIX.length(), name.length() - JOURNAL_SUFFIX.length()));
+                    generations[count++] = gen;
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        long[] result = Arrays.copyOf(generations, count);
+        Arrays.sort(result);
+        return result;
+    }
+}
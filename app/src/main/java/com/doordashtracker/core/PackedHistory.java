@@ -0,0 +1,39 @@
+package com.doordashtracker.core;
+
+/**
+ * Immutable view of an {@link AcceptanceWindow}'s entries at the time
+ * {@link AcceptanceWindow#snapshot()} was called. Index 0 is the oldest entry.
+ * The storage is shared with the window, which copies a chunk before changing
+ * it, so successive snapshots cost O(changed chunks) rather than O(window).
+ */
+public final class PackedHistory {
+
+    private final int capacity;
+    private final int head;
+    private final int size;
+    private final long[][] chunks;
+
+    PackedHistory(int capacity, int head, int size, long[][] chunks) {
+        this.capacity = capacity;
+        this.head = head;
+        this.size = size;
+        this.chunks = chunks;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        int slot = head + index;
+        return AcceptanceWindow.readSlot(chunks, slot >= capacity ? slot - capacity : slot);
+    }
+
+    /** Same as {@link AcceptanceWindow#word(int)} at the time of the snapshot. */
+    public long word(int wordIndex) {
+        return AcceptanceWindow.logicalWord(chunks, capacity, head, size, wordIndex);
+    }
+}
@@ -0,0 +1,101 @@
+package com.doordashtracker.core;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide latency histograms and counters for the tracker's hot paths.
+ * Times are recorded in nanoseconds. Recording is allocation-free; only
+ * {@link #dump(PrintWriter)} and {@link #summary()} allocate.
+ */
+public final class PerfStats {
+
+    /** TrackerEngine.addOrder, including delivery to every listener. */
+    public static final LatencyHistogram ADD_ORDER = new LatencyHistogram();
+    public static final LatencyHistogram ACTIVITY_UPDATE = new LatencyHistogram();
+    public static final LatencyHistogram OVERLAY_UPDATE = new LatencyHistogram();
+    /**
+     * Recording one frame of the overlay's panel or bubble on the UI thread.
+     * GPU time is in {@code adb shell dumpsys gfxinfo com.doordashtracker}.
+     */
+    public static final LatencyHistogram OVERLAY_DRAW = new LatencyHistogram();
+    /** One batched journal append on the writer thread. */
+    public static final LatencyHistogram JOURNAL_WRITE = new LatencyHistogram();
+    public static final LatencyHistogram JOURNAL_COMPACTION = new LatencyHistogram();
+    public static final LatencyHistogram HISTORY_LOAD = new LatencyHistogram();
+    public static final LatencyHistogram ANALYTICS_BUILD = new LatencyHistogram();
+    /** WindowManager.updateViewLayout calls made by the overlay. */
+    public static final LatencyHistogram WINDOW_UPDATE = new LatencyHistogram();
+    /** From the overlay being requested to its first frame, at millisecond resolution. */
+    public static final LatencyHistogram OVERLAY_START = new LatencyHistogram();
+    /** From an expand or collapse starting to its first frame, at millisecond resolution. */
+    public static final LatencyHistogram OVERLAY_TRANSITION = new LatencyHistogram();
+
+    public static final AtomicLong ORDERS = new AtomicLong();
+    public static final AtomicLong JOURNAL_RECORDS = new AtomicLong();
+    public static final AtomicLong DRAG_FRAMES = new AtomicLong();
+    public static final AtomicLong DRAG_DROPPED_FRAMES = new AtomicLong();
+
+    private static final String[] HISTOGRAM_NAMES = {
+            "addOrder", "activity update", "overlay update", "overlay draw", "journal write",
+            "journal compaction", "history load", "analytics build", "window update",
+            "overlay start", "overlay transition",
+    };
+    private static final LatencyHistogram[] HISTOGRAMS = {
+            ADD_ORDER, ACTIVITY_UPDATE, OVERLAY_UPDATE, OVERLAY_DRAW, JOURNAL_WRITE,
+            JOURNAL_COMPACTION, HISTORY_LOAD, ANALYTICS_BUILD, WINDOW_UPDATE,
+            OVERLAY_START, OVERLAY_TRANSITION,
+    };
+
+    private PerfStats() {
+    }
+
+    /** Writes every histogram and counter, with times in microseconds. */
+    public static void dump(PrintWriter pw) {
+        pw.println("Latency (us)             count      p50      p90      p99      max     mean");
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            LatencyHistogram h = HISTOGRAMS[i];
+            pw.println(String.format(Locale.US, "  %-20s %8d %8.1f %8.1f %8.1f %8.1f %8.1f",
+                    HISTOGRAM_NAMES[i], h.count(),
+                    micros(h.valueAtPercentile(50)), micros(h.valueAtPercentile(90)),
+                    micros(h.valueAtPercentile(99)), micros(h.max()), h.mean() / 1000.0));
+        }
+        pw.println("Counters");
+        pw.println("  orders               " + ORDERS.get());
+        pw.println("  journal records      " + JOURNAL_RECORDS.get());
+        pw.println("  drag frames          " + DRAG_FRAMES.get());
+        pw.println("  drag dropped frames  " + DRAG_DROPPED_FRAMES.get());
+    }
+
+    /** Short multi-line form for an on-screen debug panel. */
+    public static String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            LatencyHistogram h = HISTOGRAMS[i];
+            if (i > 0) {
+                sb.append('\n');
+            }
+            sb.append(String.format(Locale.US, "%s n=%d p50=%.0fus p99=%.0fus",
+                    HISTOGRAM_NAMES[i], h.count(),
+                    micros(h.valueAtPercentile(50)), micros(h.valueAtPercentile(99))));
+        }
+        sb.append(String.format(Locale.US, "\ndrag frames %d dropped %d",
+                DRAG_FRAMES.get(), DRAG_DROPPED_FRAMES.get()));
+        return sb.toString();
+    }
+
+    public static void reset() {
+        for (LatencyHistogram h : HISTOGRAMS) {
+            h.reset();
+        }
+        ORDERS.set(0);
+        JOURNAL_RECORDS.set(0);
+        DRAG_FRAMES.set(0);
+        DRAG_DROPPED_FRAMES.set(0);
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+}
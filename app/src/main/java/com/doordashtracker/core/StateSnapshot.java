@@ -0,0 +1,238 @@
+package com.doordashtracker.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The few values a home-screen widget or Quick Settings tile shows, small
+ * enough to be read from disk on every update without loading the history.
+ *
+ * It also keeps the primary window, the exact weighted trend and the number of
+ * events in the history it was taken from, so a decision logged while the app
+ * is not running can be applied with {@link #after(boolean)} without loading
+ * the history.
+ *
+ * <pre>
+ * version (1) | rate permille (4) | tier (1) | trend (1) | size (4) | capacity (4)
+ *     | events (8) | weighted trend (8) | primary window ({@link HistoryCodec}, rest of file)
+ * </pre>
+ *
+ * Files written before the window was kept end after the capacity; they are
+ * still shown but cannot be advanced.
+ */
+public final class StateSnapshot {
+
+    public static final String FILE_NAME = "state.snapshot";
+
+    /** Shown before anything has been published. */
+    public static final StateSnapshot EMPTY =
+            new StateSnapshot(0, TrackerState.TIER_LOW, WindowStats.TREND_FLAT, 0, 0, -1L, Double.NaN, null);
+
+    private static final byte DISPLAY_ONLY_VERSION = 1;
+    private static final byte FORMAT_VERSION = 2;
+    private static final int DISPLAY_LENGTH = 15;
+    private static final int HEADER_LENGTH = DISPLAY_LENGTH + 16;
+    /** Far more than the largest window offered needs. */
+    private static final int MAX_LENGTH = 64 * 1024;
+
+    private final int permille;
+    private final int tier;
+    private final int trend;
+    private final int size;
+    private final int capacity;
+    private final long eventCount;
+    private final double weightedTrend;
+    /** The primary window in {@link HistoryCodec} form, or null if not known. */
+    private final byte[] window;
+
+    private StateSnapshot(int permille, int tier, int trend, int size, int capacity,
+                          long eventCount, double weightedTrend, byte[] window) {
+        this.permille = permille;
+        this.tier = tier;
+        this.trend = trend;
+        this.size = size;
+        this.capacity = capacity;
+        this.eventCount = eventCount;
+        this.weightedTrend = weightedTrend;
+        this.window = window;
+    }
+
+    /**
+     * Snapshot of {@code window}, the primary window, with {@code stats}, its
+     * statistics, taken when the history held {@code eventCount} events.
+     */
+    public static StateSnapshot of(AcceptanceWindow window, WindowStats stats, long eventCount) {
+        return of(window, stats.weightedTrend(), eventCount);
+    }
+
+    private static StateSnapshot of(AcceptanceWindow window, double weightedTrend, long eventCount) {
+        TrackerState state = new TrackerState(0L, window);
+        return new StateSnapshot(state.acceptancePermille(), state.rateTier(),
+                WindowStats.trend(weightedTrend, window), window.size(), window.capacity(),
+                eventCount, weightedTrend, HistoryCodec.encode(window));
+    }
+
+    /**
+     * Reads the snapshot in {@code file}, or returns {@link #EMPTY} if there is
+     * none or it is unreadable or out of range.
+     */
+    public static StateSnapshot read(File file) {
+        byte[] data;
+        try {
+            long fileLength = file.length();
+            if (fileLength < DISPLAY_LENGTH || fileLength > MAX_LENGTH) {
+                return EMPTY;
+            }
+            data = new byte[(int) fileLength];
+            FileInputStream in = new FileInputStream(file);
+            try {
+                int read = 0;
+                int n;
+                while (read < data.length && (n = in.read(data, read, data.length - read)) > 0) {
+                    read += n;
+                }
+                if (read < data.length) {
+                    return EMPTY;
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return EMPTY;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        byte version = buffer.get();
+        if (version != FORMAT_VERSION && version != DISPLAY_ONLY_VERSION) {
+            return EMPTY;
+        }
+        int permille = buffer.getInt();
+        int tier = buffer.get();
+        int trend = buffer.get();
+        int size = buffer.getInt();
+        int capacity = buffer.getInt();
+        // The widget and tile index colors by tier, so nothing out of range gets through.
+        if (permille < 0 || permille > 1000 || tier < TrackerState.TIER_LOW || tier > TrackerState.TIER_HIGH
+                || trend < WindowStats.TREND_DOWN || trend > WindowStats.TREND_UP
+                || size < 0 || size > capacity) {
+            return EMPTY;
+        }
+        if (version == DISPLAY_ONLY_VERSION || data.length <= HEADER_LENGTH) {
+            return new StateSnapshot(permille, tier, trend, size, capacity, -1L, Double.NaN, null);
+        }
+
+        long eventCount = buffer.getLong();
+        double weightedTrend = buffer.getDouble();
+        byte[] window = Arrays.copyOfRange(data, HEADER_LENGTH, data.length);
+        try {
+            if (eventCount < 0 || HistoryCodec.decodedCapacity(window, 0, window.length) != capacity) {
+                window = null;
+            }
+        } catch (IllegalArgumentException e) {
+            window = null;
+        }
+        return new StateSnapshot(permille, tier, trend, size, capacity,
+                window != null ? eventCount : -1L, weightedTrend, window);
+    }
+
+    /** Replaces {@code file} with this snapshot, never leaving a partly written one behind. */
+    public void write(File file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + (window != null ? window.length : 0));
+        buffer.put(FORMAT_VERSION).putInt(permille).put((byte) tier).put((byte) trend).putInt(size).putInt(capacity)
+                .putLong(eventCount).putDouble(weightedTrend);
+        if (window != null) {
+            buffer.put(window);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(buffer.array());
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("cannot replace " + file);
+        }
+    }
+
+    /** Whether {@link #after(boolean)} can be used. */
+    public boolean canAdvance() {
+        return window != null;
+    }
+
+    /** Number of events in the history this was taken from, or -1 if not known. */
+    public long eventCount() {
+        return eventCount;
+    }
+
+    /**
+     * This snapshot with one more decision added, as the engine would publish
+     * it, counting one more event.
+     *
+     * @throws IllegalStateException if this snapshot cannot be advanced
+     * @throws IllegalArgumentException if the stored window is corrupt
+     */
+    public StateSnapshot after(boolean accepted) {
+        if (window == null) {
+            throw new IllegalStateException("snapshot has no window");
+        }
+        AcceptanceWindow restored = new AcceptanceWindow(capacity);
+        HistoryCodec.decode(window, 0, window.length, restored);
+        restored.add(accepted);
+        return of(restored, WindowStats.weigh(weightedTrend, accepted), eventCount + 1);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Acceptance rate in tenths of a percent, see {@link TrackerState#acceptancePermille()}. */
+    public int acceptancePermille() {
+        return permille;
+    }
+
+    /** One of the {@code TrackerState.TIER_} constants. */
+    public int rateTier() {
+        return tier;
+    }
+
+    /** One of the {@code WindowStats.TREND_} constants. */
+    public int trend() {
+        return trend;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Whether the widget and tile show {@code other} the same as this. */
+    public boolean looksLike(StateSnapshot other) {
+        return permille == other.permille && tier == other.tier && trend == other.trend
+                && isEmpty() == other.isEmpty() && capacity == other.capacity;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof StateSnapshot)) {
+            return false;
+        }
+        StateSnapshot other = (StateSnapshot) o;
+        return permille == other.permille && tier == other.tier && trend == other.trend
+                && size == other.size && capacity == other.capacity && eventCount == other.eventCount
+                && Double.compare(weightedTrend, other.weightedTrend) == 0 && Arrays.equals(window, other.window);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = (((permille * 31 + tier) * 31 + trend) * 31 + size) * 31 + capacity;
+        return hash * 31 + (int) (eventCount ^ (eventCount >>> 32));
+    }
+}
@@ -0,0 +1,77 @@
+package com.doordashtracker.core;
+
+/**
+ * Fixed-capacity, reusable character buffer for building short UI strings
+ * without allocating. Pass {@link #chars()} and {@link #length()} to
+ * {@code TextView.setText(char[], int, int)}, and only rebuild the buffer right
+ * before the next such call.
+ */
+public final class TextBuffer {
+
+    private final char[] chars;
+    private int length;
+
+    public TextBuffer(int capacity) {
+        chars = new char[capacity];
+    }
+
+    public TextBuffer clear() {
+        length = 0;
+        return this;
+    }
+
+    public TextBuffer append(String text) {
+        text.getChars(0, text.length(), chars, length);
+        length += text.length();
+        return this;
+    }
+
+    public TextBuffer append(char c) {
+        chars[length++] = c;
+        return this;
+    }
+
+    public TextBuffer append(int value) {
+        if (value < 0) {
+            chars[length++] = '-';
+            value = -value;
+        }
+        int start = length;
+        do {
+            chars[length++] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            char c = chars[i];
+            chars[i] = chars[j];
+            chars[j] = c;
+        }
+        return this;
+    }
+
+    /** Appends a rate given in tenths of a percent, e.g. 857 as {@code "85.7%"} and -5 as {@code "-0.5%"}. */
+    public TextBuffer appendPercent(int permille) {
+        if (permille < 0) {
+            chars[length++] = '-';
+            permille = -permille;
+        }
+        append(permille / 10);
+        chars[length++] = '.';
+        chars[length++] = (char) ('0' + permille % 10);
+        chars[length++] = '%';
+        return this;
+    }
+
+    public char[] chars() {
+        return chars;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+}
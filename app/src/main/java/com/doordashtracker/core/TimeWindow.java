@@ -0,0 +1,127 @@
+package com.doordashtracker.core;
+
+import java.util.Arrays;
+
+/**
+ * Decisions made within the last {@link #durationMillis()}, such as the 30
+ * days DoorDash rates some metrics over. Each decision is scheduled to expire
+ * in a binary min-heap keyed by expiry time, so {@link #nextExpiryMillis()} is
+ * O(1) and a caller can sleep until exactly then; {@link #expire(long)} pops
+ * only what is due. Entries are packed into longs, so adding allocates only
+ * when the heap grows. Not thread-safe.
+ */
+public final class TimeWindow {
+
+    private final long durationMillis;
+    /** Expiry millis shifted left by one, with the low bit set for an accept. */
+    private long[] heap = new long[64];
+    private int size;
+    private int acceptedCount;
+
+    public TimeWindow(long durationMillis) {
+        if (durationMillis <= 0) {
+            throw new IllegalArgumentException("duration must be positive: " + durationMillis);
+        }
+        this.durationMillis = durationMillis;
+    }
+
+    public long durationMillis() {
+        return durationMillis;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int acceptedCount() {
+        return acceptedCount;
+    }
+
+    public int declinedCount() {
+        return size - acceptedCount;
+    }
+
+    /**
+     * Adds a decision made at {@code timestampMillis}, which need not be later
+     * than the ones already added.
+     */
+    public void add(long timestampMillis, boolean accepted) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+        }
+        long entry = (timestampMillis + durationMillis) << 1 | (accepted ? 1L : 0L);
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= entry) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = entry;
+        if (accepted) {
+            acceptedCount++;
+        }
+    }
+
+    /** Drops every decision that has aged out by {@code nowMillis}. Returns true if any did. */
+    public boolean expire(long nowMillis) {
+        int before = size;
+        while (size > 0 && (heap[0] >> 1) <= nowMillis) {
+            if ((heap[0] & 1L) != 0) {
+                acceptedCount--;
+            }
+            long last = heap[--size];
+            siftDown(last);
+        }
+        return size != before;
+    }
+
+    /** When the next decision ages out, or {@link Long#MAX_VALUE} if the window is empty. */
+    public long nextExpiryMillis() {
+        return size == 0 ? Long.MAX_VALUE : heap[0] >> 1;
+    }
+
+    public void clear() {
+        size = 0;
+        acceptedCount = 0;
+    }
+
+    /**
+     * Refills the window with the decisions in {@code events} that have not
+     * aged out by {@code nowMillis}, stopping at the most recent reset. Only the
+     * events within the window's duration are read.
+     */
+    public void fill(EventStore events, long nowMillis) {
+        clear();
+        int end = events.size();
+        for (int i = events.firstIndexAtOrAfter(nowMillis - durationMillis + 1); i < end; i++) {
+            byte op = events.op(i);
+            if (op == OrderJournal.OP_RESET) {
+                clear();
+            } else {
+                add(events.timestamp(i), op == OrderJournal.OP_ACCEPT);
+            }
+        }
+    }
+
+    private void siftDown(long entry) {
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (entry <= heap[child]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        if (size > 0) {
+            heap[i] = entry;
+        }
+    }
+}
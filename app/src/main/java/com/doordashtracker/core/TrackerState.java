@@ -0,0 +1,282 @@
+package com.doordashtracker.core;
+
+/**
+ * Immutable snapshot of the acceptance window handed to UI surfaces.
+ * Index 0 is the oldest order, i.e. the next one to fall off.
+ *
+ * Besides the primary window it carries the counts, but not the entries, of any
+ * comparison windows tracked side by side and of the {@link TimeWindow}, if any,
+ * and the primary window's {@link WindowStats}, if tracked.
+ *
+ * The entries are a {@link PackedHistory} shared copy-on-write with the window,
+ * so creating a state per order does not copy or allocate in proportion to the
+ * window. The positions of the {@link #SHOWN_DECLINES} oldest declines are
+ * copied from the window; older ones are found from the entries when asked for.
+ */
+public final class TrackerState {
+
+    public static final int TIER_LOW = 0;
+    public static final int TIER_MEDIUM = 1;
+    public static final int TIER_HIGH = 2;
+
+    /** Number of oldest declines whose fall-off is answered without a scan. */
+    public static final int SHOWN_DECLINES = 4;
+
+    private static final int UNKNOWN_CHANGE = Integer.MIN_VALUE;
+
+    private final long version;
+    private final int capacity;
+    private final int size;
+    private final int acceptedCount;
+    private final PackedHistory history;
+    /** Window indices of the oldest declines, oldest first. */
+    private final int[] oldestDeclines = new int[SHOWN_DECLINES];
+    private final int oldestDeclineCount;
+    private final int[] comparisonCapacities;
+    private final int[] comparisonSizes;
+    private final int[] comparisonAccepted;
+    private final long timeWindowMillis;
+    private final int timeWindowSize;
+    private final int timeWindowAccepted;
+    private final boolean hasStats;
+    private final int currentStreak;
+    private final int longestAcceptStreak;
+    private final int longestDeclineStreak;
+    private final int trend;
+    private final int trendPermille;
+    /** One per {@link WindowStats#CHANGE_SPANS} entry, or {@link #UNKNOWN_CHANGE}. */
+    private final int[] rateChanges = new int[WindowStats.CHANGE_SPANS.length];
+    private AcceptanceProjection projection;
+
+    public TrackerState(long version, AcceptanceWindow window, AcceptanceWindow... comparisons) {
+        this(version, window, null, null, comparisons);
+    }
+
+    /**
+     * @param stats statistics of {@code window}, or null
+     * @param timeWindow the time window, or null
+     */
+    public TrackerState(long version, AcceptanceWindow window, WindowStats stats, TimeWindow timeWindow,
+            AcceptanceWindow... comparisons) {
+        this.version = version;
+        this.capacity = window.capacity();
+        this.size = window.size();
+        this.acceptedCount = window.acceptedCount();
+        this.history = window.snapshot();
+        this.oldestDeclineCount = window.copyDeclineIndices(oldestDeclines);
+
+        comparisonCapacities = new int[comparisons.length];
+        comparisonSizes = new int[comparisons.length];
+        comparisonAccepted = new int[comparisons.length];
+        for (int i = 0; i < comparisons.length; i++) {
+            comparisonCapacities[i] = comparisons[i].capacity();
+            comparisonSizes[i] = comparisons[i].size();
+            comparisonAccepted[i] = comparisons[i].acceptedCount();
+        }
+
+        timeWindowMillis = timeWindow == null ? 0L : timeWindow.durationMillis();
+        timeWindowSize = timeWindow == null ? 0 : timeWindow.size();
+        timeWindowAccepted = timeWindow == null ? 0 : timeWindow.acceptedCount();
+
+        hasStats = stats != null;
+        currentStreak = hasStats ? stats.currentStreak() : 0;
+        longestAcceptStreak = hasStats ? stats.longestAcceptStreak() : 0;
+        longestDeclineStreak = hasStats ? stats.longestDeclineStreak() : 0;
+        trend = hasStats ? stats.trend(window) : WindowStats.TREND_FLAT;
+        trendPermille = hasStats ? stats.trendPermille() : 0;
+        for (int i = 0; i < rateChanges.length; i++) {
+            int span = WindowStats.CHANGE_SPANS[i];
+            rateChanges[i] = hasStats && stats.hasRateChange(span) ? stats.rateChangePermille(span) : UNKNOWN_CHANGE;
+        }
+    }
+
+    /** Increases by one for every change published by the engine. */
+    public long version() {
+        return version;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    public int acceptedCount() {
+        return acceptedCount;
+    }
+
+    public int declinedCount() {
+        return size - acceptedCount;
+    }
+
+    /** Acceptance rate in percent, or 0 when nothing has been tracked. */
+    public double acceptanceRate() {
+        return size == 0 ? 0.0 : (acceptedCount * 100.0) / size;
+    }
+
+    /**
+     * Acceptance rate in tenths of a percent, rounded half up like
+     * {@code String.format("%.1f")} does, or 0 when nothing has been tracked.
+     */
+    public int acceptancePermille() {
+        return permille(acceptedCount, size);
+    }
+
+    /** Color tier of the exact rate: below 50%, below 70%, or 70% and up. */
+    public int rateTier() {
+        long scaled = acceptedCount * 100L;
+        if (scaled < 50L * size || size == 0) {
+            return TIER_LOW;
+        }
+        return scaled < 70L * size ? TIER_MEDIUM : TIER_HIGH;
+    }
+
+    public boolean isAccepted(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        return history.get(index);
+    }
+
+    /**
+     * Orders after which the {@code n}-th oldest decline leaves the window,
+     * counting the orders still needed to fill it.
+     */
+    public int ordersUntilDeclineFallsOff(int n) {
+        return capacity - size + declineIndex(n) + 1;
+    }
+
+    /** Orders until the oldest decline leaves the window, or -1 if there are no declines. */
+    public int ordersUntilNextDeclineFallsOff() {
+        return oldestDeclineCount == 0 ? -1 : capacity - size + oldestDeclines[0] + 1;
+    }
+
+    public int comparisonCount() {
+        return comparisonCapacities.length;
+    }
+
+    public int comparisonCapacity(int i) {
+        return comparisonCapacities[i];
+    }
+
+    public int comparisonSize(int i) {
+        return comparisonSizes[i];
+    }
+
+    /** Acceptance rate of comparison window {@code i} in tenths of a percent, or 0 when it is empty. */
+    public int comparisonAcceptancePermille(int i) {
+        return permille(comparisonAccepted[i], comparisonSizes[i]);
+    }
+
+    public boolean hasTimeWindow() {
+        return timeWindowMillis != 0L;
+    }
+
+    /** Length of the time window, or 0 if none is tracked. */
+    public long timeWindowMillis() {
+        return timeWindowMillis;
+    }
+
+    public int timeWindowSize() {
+        return timeWindowSize;
+    }
+
+    /** Acceptance rate within the time window in tenths of a percent, or 0 when it is empty. */
+    public int timeWindowAcceptancePermille() {
+        return permille(timeWindowAccepted, timeWindowSize);
+    }
+
+    public boolean hasStats() {
+        return hasStats;
+    }
+
+    /** Length of the newest run of equal decisions, positive for accepts and negative for declines. */
+    public int currentStreak() {
+        return currentStreak;
+    }
+
+    public int longestAcceptStreak() {
+        return longestAcceptStreak;
+    }
+
+    public int longestDeclineStreak() {
+        return longestDeclineStreak;
+    }
+
+    /** One of the {@code WindowStats.TREND_} constants. */
+    public int trend() {
+        return trend;
+    }
+
+    /** Exponentially weighted acceptance rate in tenths of a percent. */
+    public int trendPermille() {
+        return trendPermille;
+    }
+
+    /** Whether {@link #rateChangePermille(int)} is known for {@code WindowStats.CHANGE_SPANS[i]}. */
+    public boolean hasRateChange(int i) {
+        return rateChanges[i] != UNKNOWN_CHANGE;
+    }
+
+    /** How far the rate moved over the last {@code WindowStats.CHANGE_SPANS[i]} orders, in tenths of a percent. */
+    public int rateChangePermille(int i) {
+        return hasRateChange(i) ? rateChanges[i] : 0;
+    }
+
+    /** What-if projections for this state, computed on first use and then cached. */
+    public AcceptanceProjection projection() {
+        if (projection == null) {
+            projection = new AcceptanceProjection(this);
+        }
+        return projection;
+    }
+
+    /**
+     * Window index of the {@code n}-th oldest decline, copied for the first
+     * {@link #SHOWN_DECLINES} and otherwise found with one pass over the words.
+     */
+    int declineIndex(int n) {
+        if (n < 0 || n >= declinedCount()) {
+            throw new IndexOutOfBoundsException("decline " + n + ", declines " + declinedCount());
+        }
+        if (n < oldestDeclineCount) {
+            return oldestDeclines[n];
+        }
+        int remaining = n;
+        int words = (size + 63) >>> 6;
+        for (int i = 0; i < words; i++) {
+            long declined = ~history.word(i);
+            if (i == words - 1 && (size & 63) != 0) {
+                declined &= (1L << size) - 1;
+            }
+            int count = Long.bitCount(declined);
+            if (remaining < count) {
+                for (int k = 0; k < remaining; k++) {
+                    declined &= declined - 1;
+                }
+                return (i << 6) + Long.numberOfTrailingZeros(declined);
+            }
+            remaining -= count;
+        }
+        throw new IllegalStateException("declines do not match the entries");
+    }
+
+    long word(int wordIndex) {
+        return history.word(wordIndex);
+    }
+
+    /** {@code accepted} of {@code size} in tenths of a percent, rounded half up. */
+    private static int permille(int accepted, int size) {
+        return size == 0 ? 0 : (int) ((accepted * 2000L + size) / (2L * size));
+    }
+}
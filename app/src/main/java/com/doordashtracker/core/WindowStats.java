@@ -0,0 +1,281 @@
+package com.doordashtracker.core;
+
+/**
+ * Streak and trend statistics of an {@link AcceptanceWindow}, kept up to date
+ * from what each {@link AcceptanceWindow#add(boolean)} inserts and evicts.
+ *
+ * The window is tracked as a queue of runs of equal decisions. The longest
+ * accept and decline runs come from one monotonic queue each: a run that is
+ * shorter than a newer run of the same kind can never be the longest again and
+ * is dropped. Every run enters and leaves each queue once, so an update is
+ * amortized O(1). The rings start small and double as needed; there are never
+ * more runs than decisions in the window, so they stay within its capacity
+ * rounded up to a power of two. The trend is an exponentially weighted
+ * acceptance rate, and rate changes are read from a short ring of recent window
+ * rates. Not thread-safe.
+ */
+public final class WindowStats {
+
+    public static final int TREND_DOWN = -1;
+    public static final int TREND_FLAT = 0;
+    public static final int TREND_UP = 1;
+
+    /** Offers over which {@link #rateChangePermille(int)} can be asked for. */
+    public static final int[] CHANGE_SPANS = {10, 25};
+    public static final int MAX_CHANGE_SPAN = 25;
+
+    /** Decisions the weighted trend mostly reflects. */
+    private static final int TREND_SPAN = 20;
+    private static final double TREND_ALPHA = 2.0 / (TREND_SPAN + 1);
+    /** How far the trend must lead the window rate to count as rising or falling. */
+    private static final int TREND_THRESHOLD_PERMILLE = 20;
+
+    /** Initial length of each ring; a power of two. */
+    private static final int INITIAL_RING = 16;
+
+    /**
+     * Ring of runs, oldest first. Runs are numbered in the order they start and
+     * run {@code r} is kept at {@code r & (runLengths.length - 1)}.
+     */
+    private int[] runLengths = new int[INITIAL_RING];
+    private boolean[] runAccepted = new boolean[INITIAL_RING];
+    private int firstRun;
+    private int runCount;
+
+    /** Numbers of runs, oldest first, lengths non-increasing. */
+    private int[] longestAccepts = new int[INITIAL_RING];
+    private int longestAcceptsHead;
+    private int longestAcceptsCount;
+    private int[] longestDeclines = new int[INITIAL_RING];
+    private int longestDeclinesHead;
+    private int longestDeclinesCount;
+
+    private double trend;
+    private boolean hasTrend;
+
+    /** Window rate after each of the last {@link #MAX_CHANGE_SPAN} decisions, and the one before them. */
+    private final int[] recentPermille = new int[MAX_CHANGE_SPAN + 1];
+    private int recentPosition;
+    private int recentCount;
+
+    /** @param capacity capacity of the window; the rings grow on demand up to it */
+    public WindowStats(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+    }
+
+    /**
+     * Applies a decision just added to {@code window}, which must be the window
+     * these statistics were created for.
+     *
+     * @param evicted what {@link AcceptanceWindow#add(boolean)} returned
+     */
+    public void onAdd(AcceptanceWindow window, boolean accepted, int evicted) {
+        if (evicted != AcceptanceWindow.EVICTED_NONE) {
+            evictOldest();
+        }
+        if (runCount > 0 && runAccepted[slot(lastRun())] == accepted) {
+            int run = lastRun();
+            runLengths[slot(run)]++;
+            // The run is already at the back of its queue; drop the ones it now outgrows.
+            if (accepted) {
+                longestAcceptsCount--;
+                pushLongestAccept(run);
+            } else {
+                longestDeclinesCount--;
+                pushLongestDecline(run);
+            }
+        } else {
+            if (runCount == runLengths.length) {
+                growRuns();
+            }
+            int run = firstRun + runCount;
+            runCount++;
+            runLengths[slot(run)] = 1;
+            runAccepted[slot(run)] = accepted;
+            if (accepted) {
+                pushLongestAccept(run);
+            } else {
+                pushLongestDecline(run);
+            }
+        }
+
+        trend = weigh(weightedTrend(), accepted);
+        hasTrend = true;
+
+        recentPosition = recentPosition == MAX_CHANGE_SPAN ? 0 : recentPosition + 1;
+        recentPermille[recentPosition] = permille(window);
+        if (recentCount <= MAX_CHANGE_SPAN) {
+            recentCount++;
+        }
+    }
+
+    public void clear() {
+        firstRun = 0;
+        runCount = 0;
+        longestAcceptsCount = 0;
+        longestDeclinesCount = 0;
+        hasTrend = false;
+        recentCount = 0;
+    }
+
+    /** Length of the newest run, positive for accepts and negative for declines. */
+    public int currentStreak() {
+        if (runCount == 0) {
+            return 0;
+        }
+        int run = slot(lastRun());
+        return runAccepted[run] ? runLengths[run] : -runLengths[run];
+    }
+
+    public int longestAcceptStreak() {
+        return longestAcceptsCount == 0 ? 0 : runLengths[slot(longestAccepts[longestAcceptsHead])];
+    }
+
+    public int longestDeclineStreak() {
+        return longestDeclinesCount == 0 ? 0 : runLengths[slot(longestDeclines[longestDeclinesHead])];
+    }
+
+    /** Exponentially weighted acceptance rate in tenths of a percent, or 0 if empty. */
+    public int trendPermille() {
+        return hasTrend ? (int) Math.round(trend) : 0;
+    }
+
+    /** Whether recent decisions run above, near or below {@code window}'s rate. */
+    public int trend(AcceptanceWindow window) {
+        return trend(weightedTrend(), window);
+    }
+
+    /** The exact weighted rate in tenths of a percent, or NaN if empty. */
+    double weightedTrend() {
+        return hasTrend ? trend : Double.NaN;
+    }
+
+    /** The weighted rate after one more decision, starting from NaN for none. */
+    static double weigh(double weighted, boolean accepted) {
+        double value = accepted ? 1000.0 : 0.0;
+        return Double.isNaN(weighted) ? value : weighted + TREND_ALPHA * (value - weighted);
+    }
+
+    /** {@link #trend(AcceptanceWindow)} for a weighted rate kept elsewhere, NaN for none. */
+    static int trend(double weighted, AcceptanceWindow window) {
+        if (Double.isNaN(weighted)) {
+            return TREND_FLAT;
+        }
+        int lead = (int) Math.round(weighted) - permille(window);
+        if (lead >= TREND_THRESHOLD_PERMILLE) {
+            return TREND_UP;
+        }
+        return lead <= -TREND_THRESHOLD_PERMILLE ? TREND_DOWN : TREND_FLAT;
+    }
+
+    /** Whether {@link #rateChangePermille(int)} is known for {@code span}. */
+    public boolean hasRateChange(int span) {
+        return span <= MAX_CHANGE_SPAN && recentCount > span;
+    }
+
+    /** How far the window rate moved over the last {@code span} decisions, in tenths of a percent. */
+    public int rateChangePermille(int span) {
+        if (!hasRateChange(span)) {
+            return 0;
+        }
+        int then = recentPosition - span;
+        if (then < 0) {
+            then += MAX_CHANGE_SPAN + 1;
+        }
+        return recentPermille[recentPosition] - recentPermille[then];
+    }
+
+    private void evictOldest() {
+        int run = firstRun;
+        int length = --runLengths[slot(run)];
+        if (runAccepted[slot(run)]) {
+            if (longestAcceptsCount > 0 && longestAccepts[longestAcceptsHead] == run
+                    && (length == 0 || (longestAcceptsCount > 1
+                    && length < runLengths[slot(longestAccepts[next(longestAccepts, longestAcceptsHead)])]))) {
+                longestAcceptsHead = next(longestAccepts, longestAcceptsHead);
+                longestAcceptsCount--;
+            }
+        } else {
+            if (longestDeclinesCount > 0 && longestDeclines[longestDeclinesHead] == run
+                    && (length == 0 || (longestDeclinesCount > 1
+                    && length < runLengths[slot(longestDeclines[next(longestDeclines, longestDeclinesHead)])]))) {
+                longestDeclinesHead = next(longestDeclines, longestDeclinesHead);
+                longestDeclinesCount--;
+            }
+        }
+        if (length == 0) {
+            firstRun++;
+            runCount--;
+        }
+    }
+
+    private void pushLongestAccept(int run) {
+        int length = runLengths[slot(run)];
+        while (longestAcceptsCount > 0 && runLengths[slot(longestAccepts[
+                (longestAcceptsHead + longestAcceptsCount - 1) & (longestAccepts.length - 1)])] <= length) {
+            longestAcceptsCount--;
+        }
+        if (longestAcceptsCount == longestAccepts.length) {
+            longestAccepts = grow(longestAccepts, longestAcceptsHead, longestAcceptsCount);
+            longestAcceptsHead = 0;
+        }
+        longestAccepts[(longestAcceptsHead + longestAcceptsCount) & (longestAccepts.length - 1)] = run;
+        longestAcceptsCount++;
+    }
+
+    private void pushLongestDecline(int run) {
+        int length = runLengths[slot(run)];
+        while (longestDeclinesCount > 0 && runLengths[slot(longestDeclines[
+                (longestDeclinesHead + longestDeclinesCount - 1) & (longestDeclines.length - 1)])] <= length) {
+            longestDeclinesCount--;
+        }
+        if (longestDeclinesCount == longestDeclines.length) {
+            longestDeclines = grow(longestDeclines, longestDeclinesHead, longestDeclinesCount);
+            longestDeclinesHead = 0;
+        }
+        longestDeclines[(longestDeclinesHead + longestDeclinesCount) & (longestDeclines.length - 1)] = run;
+        longestDeclinesCount++;
+    }
+
+    /** Doubles the run ring, keeping every run at its slot for the new length. */
+    private void growRuns() {
+        int[] lengths = new int[runLengths.length * 2];
+        boolean[] accepted = new boolean[lengths.length];
+        for (int i = 0; i < runCount; i++) {
+            int run = firstRun + i;
+            lengths[run & (lengths.length - 1)] = runLengths[slot(run)];
+            accepted[run & (lengths.length - 1)] = runAccepted[slot(run)];
+        }
+        runLengths = lengths;
+        runAccepted = accepted;
+    }
+
+    /** A ring of twice the length holding the {@code count} entries from {@code head}, from index 0. */
+    private static int[] grow(int[] ring, int head, int count) {
+        int[] grown = new int[ring.length * 2];
+        for (int i = 0; i < count; i++) {
+            grown[i] = ring[(head + i) & (ring.length - 1)];
+        }
+        return grown;
+    }
+
+    private int lastRun() {
+        return firstRun + runCount - 1;
+    }
+
+    /** Position of run number {@code run} in the run ring. */
+    private int slot(int run) {
+        return run & (runLengths.length - 1);
+    }
+
+    private static int next(int[] ring, int position) {
+        return (position + 1) & (ring.length - 1);
+    }
+
+    private static int permille(AcceptanceWindow window) {
+        int size = window.size();
+        return size == 0 ? 0 : (int) ((window.acceptedCount() * 2000L + size) / (2L * size));
+    }
+}
@@ -0,0 +1,219 @@
+package com.doordashtracker.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class HistoryCodecTest {
+
+    @Test
+    public void roundTripsPartlyFilledFullAndWrappedWindows() {
+        int[] capacities = {1, 7, 64, 100, 129, 1000};
+        for (int capacity : capacities) {
+            int[] counts = {0, 1, capacity / 2, capacity, capacity + 1, capacity * 3 + 5};
+            for (int count : counts) {
+                AcceptanceWindow window = fill(new AcceptanceWindow(capacity), decisions(count, capacity));
+                AcceptanceWindow decoded = new AcceptanceWindow(capacity);
+                HistoryCodec.decode(HistoryCodec.encode(window), 0, HistoryCodec.encodedLength(window), decoded);
+                assertSameEntries("capacity " + capacity + ", " + count + " added", window, decoded);
+            }
+        }
+    }
+
+    @Test
+    public void decodedWindowKeepsTrackingDeclines() {
+        AcceptanceWindow window = fill(new AcceptanceWindow(100), decisions(250, 3));
+        AcceptanceWindow decoded = new AcceptanceWindow(100);
+        HistoryCodec.decode(HistoryCodec.encode(window), 0, HistoryCodec.encodedLength(window), decoded);
+        for (int i = 0; i < 40; i++) {
+            boolean accepted = i % 3 != 0;
+            assertEquals(window.add(accepted), decoded.add(accepted));
+        }
+        assertSameEntries("after more orders", window, decoded);
+        assertEquals(window.ordersUntilNextDeclineFallsOff(), decoded.ordersUntilNextDeclineFallsOff());
+    }
+
+    @Test
+    public void encodesAtAnOffset() {
+        AcceptanceWindow window = fill(new AcceptanceWindow(50), decisions(75, 5));
+        int length = HistoryCodec.encodedLength(window);
+        byte[] buffer = new byte[length + 10];
+        assertEquals(length, HistoryCodec.encode(window, buffer, 10));
+        assertEquals(50, HistoryCodec.decodedCapacity(buffer, 10, length));
+        AcceptanceWindow decoded = new AcceptanceWindow(50);
+        HistoryCodec.decode(buffer, 10, length, decoded);
+        assertSameEntries("at offset", window, decoded);
+    }
+
+    @Test
+    public void decodesIntoSmallerWindowKeepingNewestEntries() {
+        AcceptanceWindow window = fill(new AcceptanceWindow(100), decisions(130, 7));
+        AcceptanceWindow decoded = new AcceptanceWindow(30);
+        HistoryCodec.decode(HistoryCodec.encode(window), 0, HistoryCodec.encodedLength(window), decoded);
+        assertEquals(30, decoded.size());
+        for (int i = 0; i < 30; i++) {
+            assertEquals("entry " + i, window.get(70 + i), decoded.get(i));
+        }
+    }
+
+    @Test
+    public void decodesIntoLargerWindowKeepingEveryEntry() {
+        AcceptanceWindow window = fill(new AcceptanceWindow(100), decisions(130, 7));
+        AcceptanceWindow decoded = fill(new AcceptanceWindow(500), decisions(20, 2));
+        HistoryCodec.decode(HistoryCodec.encode(window), 0, HistoryCodec.encodedLength(window), decoded);
+        assertEquals(500, decoded.capacity());
+        assertSameEntries("larger target", window, decoded);
+    }
+
+    @Test
+    public void rejectsBadMagic() {
+        byte[] data = encoded();
+        data[0] = 'X';
+        assertRejected(data);
+        try {
+            HistoryCodec.decodedCapacity(data, 0, data.length);
+            fail("accepted bad magic");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void rejectsUnknownVersion() {
+        byte[] data = encoded();
+        data[2] = (byte) (HistoryCodec.VERSION + 1);
+        assertRejected(data);
+    }
+
+    @Test
+    public void rejectsChecksumMismatch() {
+        byte[] data = encoded();
+        data[16] ^= 1;
+        assertRejected(data);
+
+        data = encoded();
+        data[data.length - 1] ^= 1;
+        assertRejected(data);
+    }
+
+    @Test
+    public void rejectsTruncatedData() {
+        byte[] data = encoded();
+        AcceptanceWindow target = new AcceptanceWindow(100);
+        try {
+            HistoryCodec.decode(data, 0, data.length - 1, target);
+            fail("accepted truncated data");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void rejectedDataLeavesTargetUntouched() {
+        byte[] data = encoded();
+        data[20] ^= 1;
+        AcceptanceWindow target = fill(new AcceptanceWindow(100), decisions(10, 3));
+        AcceptanceWindow before = fill(new AcceptanceWindow(100), decisions(10, 3));
+        assertRejected(data, target);
+        assertSameEntries("after rejected decode", before, target);
+    }
+
+    @Test
+    public void decodeLegacyMatchesStringSplit() {
+        String[] inputs = {
+                "", "1", "0", "1,0,1", "1,0,1,", "1,0,1,,,", ",1", ",,", ",", "1,,0",
+                "1,true,0,11,x,1", " 1,1 ,1", "0,0,0,0",
+        };
+        for (String csv : inputs) {
+            AcceptanceWindow window = new AcceptanceWindow(100);
+            HistoryCodec.decodeLegacy(csv, window);
+            List<Boolean> expected = splitLikeTheOldApp(csv);
+            assertEquals("size of \"" + csv + "\"", expected.size(), window.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals("\"" + csv + "\" entry " + i, expected.get(i), window.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void decodeLegacyKeepsNewestEntriesThatFit() {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 150; i++) {
+            csv.append(i % 4 == 0 ? "0" : "1").append(',');
+        }
+        AcceptanceWindow window = new AcceptanceWindow(100);
+        HistoryCodec.decodeLegacy(csv.toString(), window);
+        List<Boolean> expected = splitLikeTheOldApp(csv.toString());
+        assertEquals(100, window.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("entry " + i, expected.get(50 + i), window.get(i));
+        }
+    }
+
+    @Test
+    public void decodeLegacyReplacesPreviousContents() {
+        AcceptanceWindow window = fill(new AcceptanceWindow(10), decisions(10, 2));
+        HistoryCodec.decodeLegacy("1,1", window);
+        assertEquals(2, window.size());
+        assertEquals(2, window.acceptedCount());
+    }
+
+    /** What the app did before the binary snapshot: split on commas, "1" is an accept. */
+    private static List<Boolean> splitLikeTheOldApp(String csv) {
+        List<Boolean> history = new ArrayList<>();
+        if (!csv.isEmpty()) {
+            for (String part : csv.split(",")) {
+                history.add(part.equals("1"));
+            }
+        }
+        return history;
+    }
+
+    private static byte[] encoded() {
+        return HistoryCodec.encode(fill(new AcceptanceWindow(100), decisions(140, 9)));
+    }
+
+    private static void assertRejected(byte[] data) {
+        assertRejected(data, new AcceptanceWindow(100));
+    }
+
+    private static void assertRejected(byte[] data, AcceptanceWindow target) {
+        try {
+            HistoryCodec.decode(data, 0, data.length, target);
+            fail("accepted corrupt data");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    private static boolean[] decisions(int count, long seed) {
+        Random random = new Random(seed);
+        boolean[] decisions = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            decisions[i] = random.nextInt(10) < 7;
+        }
+        return decisions;
+    }
+
+    private static AcceptanceWindow fill(AcceptanceWindow window, boolean[] decisions) {
+        for (boolean accepted : decisions) {
+            window.add(accepted);
+        }
+        return window;
+    }
+
+    private static void assertSameEntries(String message, AcceptanceWindow expected, AcceptanceWindow actual) {
+        assertEquals(message + ": size", expected.size(), actual.size());
+        assertEquals(message + ": accepted", expected.acceptedCount(), actual.acceptedCount());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(message + ": entry " + i, expected.get(i), actual.get(i));
+        }
+        for (int n = 0; n < expected.declinedCount(); n++) {
+            assertEquals(message + ": decline " + n, expected.declineIndex(n), actual.declineIndex(n));
+        }
+    }
+}
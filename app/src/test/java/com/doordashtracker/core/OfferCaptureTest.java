@@ -0,0 +1,335 @@
+package com.doordashtracker.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class OfferCaptureTest {
+
+    private static final String DASHER = OfferCapture.DASHER_PACKAGE;
+
+    private final OfferCapture capture = new OfferCapture();
+    /** Nodes handed out and not yet recycled. */
+    private int outstanding;
+    private int handedOut;
+
+    @After
+    public void everyNodeWasRecycled() {
+        assertEquals("nodes not recycled", 0, outstanding);
+    }
+
+    @Test
+    public void offerThenAcceptClick() {
+        assertEquals(OfferCapture.DECISION_NONE, stateChanged(0, offer()));
+        assertTrue(capture.isOfferShowing());
+        assertEquals(OfferCapture.DECISION_ACCEPT, click(100, "Accept"));
+        assertFalse(capture.isOfferShowing());
+        // The same offer is counted once.
+        assertEquals(OfferCapture.DECISION_NONE, click(150, "Accept"));
+    }
+
+    @Test
+    public void offerThenDeclineClick() {
+        stateChanged(0, offer());
+        assertEquals(OfferCapture.DECISION_DECLINE, click(100, " decline "));
+    }
+
+    @Test
+    public void clickWithoutOfferIsIgnored() {
+        assertEquals(OfferCapture.DECISION_NONE, click(0, "Accept"));
+        stateChanged(10, tree(null, tree("Accept"), tree("Dash now")));
+        assertFalse(capture.isOfferShowing());
+        assertEquals(OfferCapture.DECISION_NONE, click(20, "Accept"));
+    }
+
+    @Test
+    public void otherAppsAndEventTypesAreIgnored() {
+        assertEquals(OfferCapture.DECISION_NONE,
+                capture.onEvent(new FakeEvent("com.example", OfferCapture.TYPE_WINDOW_STATE_CHANGED, 0, offer())));
+        assertFalse(capture.isOfferShowing());
+        assertEquals(OfferCapture.DECISION_NONE, capture.onEvent(new FakeEvent(DASHER, 0x00000008, 0, offer())));
+        assertFalse(capture.isOfferShowing());
+        assertEquals(0, handedOut);
+    }
+
+    @Test
+    public void textlessContainerClickFallsBackToSourceLabel() {
+        stateChanged(0, offer());
+        FakeEvent click = new FakeEvent(DASHER, OfferCapture.TYPE_VIEW_CLICKED, 100, null);
+        click.source = tree("ACCEPT");
+        assertEquals(OfferCapture.DECISION_ACCEPT, capture.onEvent(click));
+    }
+
+    @Test
+    public void textlessClickWithoutSourceIsIgnored() {
+        stateChanged(0, offer());
+        assertEquals(OfferCapture.DECISION_NONE, click(100));
+        FakeEvent click = new FakeEvent(DASHER, OfferCapture.TYPE_VIEW_CLICKED, 200, null);
+        click.source = tree(null, tree("Accept"));
+        // Only the container's own label counts, not its children.
+        assertEquals(OfferCapture.DECISION_NONE, capture.onEvent(click));
+        assertTrue(capture.isOfferShowing());
+    }
+
+    @Test
+    public void buttonsDeeperThanMaxDepthAreNotSeen() {
+        stateChanged(0, tree(null, nested(OfferCapture.MAX_DEPTH - 1, tree("Accept")), tree("Decline")));
+        assertTrue(capture.isOfferShowing());
+
+        capture.reset();
+        stateChanged(0, tree(null, nested(OfferCapture.MAX_DEPTH, tree("Accept")), tree("Decline")));
+        assertFalse(capture.isOfferShowing());
+    }
+
+    @Test
+    public void scanStopsAfterMaxNodes() {
+        // The root and one filler less than the limit, then the buttons.
+        stateChanged(0, withFillers(OfferCapture.MAX_NODES - 3));
+        assertTrue(capture.isOfferShowing());
+
+        capture.reset();
+        stateChanged(0, withFillers(OfferCapture.MAX_NODES));
+        assertFalse(capture.isOfferShowing());
+    }
+
+    @Test
+    public void contentChangesAreThrottled() {
+        stateChanged(0, tree("Dash now"));
+        contentChanged(OfferCapture.MIN_SCAN_INTERVAL_MILLIS - 1, offer());
+        assertFalse(capture.isOfferShowing());
+        contentChanged(OfferCapture.MIN_SCAN_INTERVAL_MILLIS, offer());
+        assertTrue(capture.isOfferShowing());
+    }
+
+    @Test
+    public void stateChangesAreNotThrottled() {
+        stateChanged(0, tree("Dash now"));
+        stateChanged(1, offer());
+        assertTrue(capture.isOfferShowing());
+    }
+
+    @Test
+    public void offerInThrottledChangeIsCaughtAtTheClick() {
+        stateChanged(0, tree("Dash now"));
+        contentChanged(100, offer());
+        assertFalse(capture.isOfferShowing());
+        // No later content change; the click itself rescans.
+        assertEquals(OfferCapture.DECISION_ACCEPT, clickIn(300, offer(), "Accept"));
+    }
+
+    @Test
+    public void clickDoesNotRescanWithoutSkippedChange() {
+        stateChanged(0, tree("Dash now"));
+        int before = handedOut;
+        assertEquals(OfferCapture.DECISION_NONE, clickIn(5000, offer(), "Accept"));
+        assertEquals(before, handedOut);
+    }
+
+    @Test
+    public void scansPauseDuringCooldown() {
+        stateChanged(0, offer());
+        assertEquals(OfferCapture.DECISION_ACCEPT, click(100, "Accept"));
+        stateChanged(100 + OfferCapture.DECISION_COOLDOWN_MILLIS - 1, offer());
+        assertFalse(capture.isOfferShowing());
+        stateChanged(100 + OfferCapture.DECISION_COOLDOWN_MILLIS, offer());
+        assertTrue(capture.isOfferShowing());
+    }
+
+    @Test
+    public void throttledChangeDuringCooldownIsNotRescannedUntilItEnds() {
+        stateChanged(0, offer());
+        click(100, "Accept");
+        contentChanged(200, offer());
+        assertEquals(OfferCapture.DECISION_NONE, clickIn(300, offer(), "Accept"));
+        assertEquals(OfferCapture.DECISION_ACCEPT,
+                clickIn(100 + OfferCapture.DECISION_COOLDOWN_MILLIS, offer(), "Accept"));
+    }
+
+    @Test
+    public void offerTimesOut() {
+        stateChanged(0, offer());
+        assertEquals(OfferCapture.DECISION_NONE, click(OfferCapture.OFFER_TIMEOUT_MILLIS + 1, "Accept"));
+        assertFalse(capture.isOfferShowing());
+
+        stateChanged(OfferCapture.OFFER_TIMEOUT_MILLIS + 10, offer());
+        assertEquals(OfferCapture.DECISION_DECLINE,
+                click(2 * OfferCapture.OFFER_TIMEOUT_MILLIS + 10, "Decline"));
+    }
+
+    @Test
+    public void nodesAreRecycledWhenAScanThrows() {
+        FakeNode broken = tree(null, tree("Accept"), tree("gone"), tree("Decline"));
+        broken.failingChild = 1;
+        try {
+            stateChanged(0, tree(null, broken));
+            fail("expected the exception to propagate");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+    }
+
+    private int stateChanged(long time, FakeNode root) {
+        return capture.onEvent(new FakeEvent(DASHER, OfferCapture.TYPE_WINDOW_STATE_CHANGED, time, root));
+    }
+
+    private int contentChanged(long time, FakeNode root) {
+        return capture.onEvent(new FakeEvent(DASHER, OfferCapture.TYPE_WINDOW_CONTENT_CHANGED, time, root));
+    }
+
+    private int click(long time, String... text) {
+        return clickIn(time, null, text);
+    }
+
+    private int clickIn(long time, FakeNode root, String... text) {
+        return capture.onEvent(new FakeEvent(DASHER, OfferCapture.TYPE_VIEW_CLICKED, time, root, text));
+    }
+
+    /** An offer card: the pay, then a row with the two buttons. */
+    private static FakeNode offer() {
+        return tree(null, tree(null, tree("$7.50"), tree(null, tree("Accept"), tree("Decline"))));
+    }
+
+    /** {@code leaf} below {@code levels} text-less containers. */
+    private static FakeNode nested(int levels, FakeNode leaf) {
+        FakeNode node = leaf;
+        for (int i = 0; i < levels; i++) {
+            node = tree(null, node);
+        }
+        return node;
+    }
+
+    private static FakeNode withFillers(int fillers) {
+        FakeNode[] children = new FakeNode[fillers + 2];
+        for (int i = 0; i < fillers; i++) {
+            children[i] = tree("filler");
+        }
+        children[fillers] = tree("Accept");
+        children[fillers + 1] = tree("Decline");
+        return new FakeNode(null, children);
+    }
+
+    private static FakeNode tree(String label, FakeNode... children) {
+        return new FakeNode(label, children);
+    }
+
+    /** A recorded node; the capture is handed a fresh {@link Handle} to it each time. */
+    private static final class FakeNode {
+        final String label;
+        final FakeNode[] children;
+        /** Index of a child whose fetch throws, as for a node that went away, or -1. */
+        int failingChild = -1;
+
+        FakeNode(String label, FakeNode[] children) {
+            this.label = label;
+            this.children = children;
+        }
+    }
+
+    private OfferCapture.Node handOut(FakeNode node) {
+        if (node == null) {
+            return null;
+        }
+        outstanding++;
+        handedOut++;
+        return new Handle(node);
+    }
+
+    private final class Handle implements OfferCapture.Node {
+        private final FakeNode node;
+        private boolean recycled;
+
+        Handle(FakeNode node) {
+            this.node = node;
+        }
+
+        @Override
+        public CharSequence label() {
+            checkLive();
+            return node.label;
+        }
+
+        @Override
+        public int childCount() {
+            checkLive();
+            return node.children.length;
+        }
+
+        @Override
+        public OfferCapture.Node child(int index) {
+            checkLive();
+            if (index == node.failingChild) {
+                throw new IllegalStateException("node went away");
+            }
+            return handOut(node.children[index]);
+        }
+
+        @Override
+        public void recycle() {
+            checkLive();
+            recycled = true;
+            outstanding--;
+        }
+
+        private void checkLive() {
+            if (recycled) {
+                fail("node used after recycle");
+            }
+        }
+    }
+
+    private final class FakeEvent implements OfferCapture.Event {
+        final String packageName;
+        final int type;
+        final long time;
+        final FakeNode root;
+        final String[] text;
+        FakeNode source;
+
+        FakeEvent(String packageName, int type, long time, FakeNode root, String... text) {
+            this.packageName = packageName;
+            this.type = type;
+            this.time = time;
+            this.root = root;
+            this.text = text;
+        }
+
+        @Override
+        public CharSequence packageName() {
+            return packageName;
+        }
+
+        @Override
+        public int type() {
+            return type;
+        }
+
+        @Override
+        public long timeMillis() {
+            return time;
+        }
+
+        @Override
+        public int textCount() {
+            return text.length;
+        }
+
+        @Override
+        public CharSequence text(int index) {
+            return text[index];
+        }
+
+        @Override
+        public OfferCapture.Node source() {
+            return handOut(source);
+        }
+
+        @Override
+        public OfferCapture.Node windowRoot() {
+            return handOut(root);
+        }
+    }
+}
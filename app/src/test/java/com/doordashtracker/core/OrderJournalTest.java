@@ -0,0 +1,73 @@
+package com.doordashtracker.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OrderJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void countsNothingInAnEmptyDirectory() throws IOException {
+        assertEquals(0, new OrderJournal(folder.getRoot()).countRecords());
+        assertEquals(0, new OrderJournal(new File(folder.getRoot(), "missing")).countRecords());
+    }
+
+    @Test
+    public void countsArchivedAndJournaledRecordsLikeOpen() throws IOException {
+        File directory = folder.newFolder();
+        OrderJournal journal = new OrderJournal(directory);
+        journal.open();
+        appendDecisions(journal, 30, 1000L);
+        journal.compact();
+        appendDecisions(journal, 7, 5000L);
+        journal.close();
+
+        assertEquals(37, new OrderJournal(directory).countRecords());
+        assertEquals(37, new OrderJournal(directory).open().size());
+    }
+
+    @Test
+    public void detachedAppendsAreReplayedInOrder() throws IOException {
+        File directory = folder.newFolder();
+        OrderJournal journal = new OrderJournal(directory);
+        journal.open();
+        appendDecisions(journal, 5, 1000L);
+        journal.compact();
+        appendDecisions(journal, 2, 2000L);
+        journal.close();
+
+        OrderJournal detached = new OrderJournal(directory);
+        detached.appendDetached(OrderJournal.OP_DECLINE, EventStore.SOURCE_WIDGET, 3000L);
+        detached.appendDetached(OrderJournal.OP_ACCEPT, EventStore.SOURCE_TILE, 4000L);
+        assertEquals(9, new OrderJournal(directory).countRecords());
+
+        OrderJournal reopened = new OrderJournal(directory);
+        EventStore events = reopened.open();
+        assertEquals(9, events.size());
+        assertEquals(OrderJournal.OP_DECLINE, events.op(7));
+        assertEquals(EventStore.SOURCE_WIDGET, events.source(7));
+        assertEquals(3000L, events.timestamp(7));
+        assertEquals(OrderJournal.OP_ACCEPT, events.op(8));
+        assertEquals(4000L, events.timestamp(8));
+
+        // Compacting archives the detached generations like any other.
+        reopened.compact();
+        reopened.close();
+        assertEquals(9, new OrderJournal(directory).countRecords());
+        assertEquals(9, new OrderJournal(directory).open().size());
+    }
+
+    private static void appendDecisions(OrderJournal journal, int count, long startMillis) throws IOException {
+        for (int i = 0; i < count; i++) {
+            byte op = i % 3 == 0 ? OrderJournal.OP_DECLINE : OrderJournal.OP_ACCEPT;
+            journal.append(op, EventStore.SOURCE_APP, startMillis + i);
+        }
+    }
+}
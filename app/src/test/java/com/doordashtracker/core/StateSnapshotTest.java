@@ -0,0 +1,157 @@
+package com.doordashtracker.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StateSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTripsThroughFile() throws IOException {
+        AcceptanceWindow window = new AcceptanceWindow(100);
+        WindowStats stats = new WindowStats(100);
+        addAll(window, stats, decisions(130, 4));
+        StateSnapshot snapshot = StateSnapshot.of(window, stats, 130);
+        File file = folder.newFile();
+        snapshot.write(file);
+
+        StateSnapshot read = StateSnapshot.read(file);
+        assertEquals(snapshot, read);
+        assertTrue(read.canAdvance());
+        assertEquals(130, read.eventCount());
+        TrackerState state = new TrackerState(0, window, stats, null);
+        assertEquals(state.acceptancePermille(), read.acceptancePermille());
+        assertEquals(state.rateTier(), read.rateTier());
+        assertEquals(state.trend(), read.trend());
+        assertEquals(100, read.size());
+        assertEquals(100, read.capacity());
+    }
+
+    @Test
+    public void advancingMatchesTheEngine() throws IOException {
+        boolean[] decisions = decisions(400, 11);
+        AcceptanceWindow window = new AcceptanceWindow(50);
+        WindowStats stats = new WindowStats(50);
+        addAll(window, stats, Arrays.copyOf(decisions, 20));
+        File file = folder.newFile();
+        StateSnapshot.of(window, stats, 20).write(file);
+
+        for (int i = 20; i < decisions.length; i++) {
+            StateSnapshot advanced = StateSnapshot.read(file).after(decisions[i]);
+            advanced.write(file);
+            stats.onAdd(window, decisions[i], window.add(decisions[i]));
+            assertEquals("after " + (i + 1), StateSnapshot.of(window, stats, i + 1), StateSnapshot.read(file));
+        }
+    }
+
+    @Test
+    public void readsDisplayOnlyVersionWithoutWindow() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(15);
+        buffer.put((byte) 1).putInt(725).put((byte) TrackerState.TIER_HIGH).put((byte) WindowStats.TREND_UP)
+                .putInt(40).putInt(100);
+        StateSnapshot read = StateSnapshot.read(write(buffer.array()));
+        assertEquals(725, read.acceptancePermille());
+        assertEquals(TrackerState.TIER_HIGH, read.rateTier());
+        assertEquals(WindowStats.TREND_UP, read.trend());
+        assertEquals(40, read.size());
+        assertFalse(read.canAdvance());
+        assertEquals(-1, read.eventCount());
+    }
+
+    @Test
+    public void rejectsOutOfRangeValues() throws IOException {
+        byte[][] corrupt = {
+                header(500, 3, 0, 10, 100),
+                header(500, -1, 0, 10, 100),
+                header(500, 1, 2, 10, 100),
+                header(500, 1, -2, 10, 100),
+                header(1001, 1, 0, 10, 100),
+                header(500, 1, 0, 101, 100),
+        };
+        for (byte[] data : corrupt) {
+            assertSame(StateSnapshot.EMPTY, StateSnapshot.read(write(data)));
+        }
+    }
+
+    @Test
+    public void corruptWindowCannotBeAdvanced() throws IOException {
+        AcceptanceWindow window = new AcceptanceWindow(20);
+        WindowStats stats = new WindowStats(20);
+        addAll(window, stats, decisions(10, 2));
+        File file = folder.newFile();
+        StateSnapshot.of(window, stats, 10).write(file);
+        byte[] data = Files.readAllBytes(file.toPath());
+        data[31] = 'X';
+        StateSnapshot read = StateSnapshot.read(write(data));
+        assertFalse(read.canAdvance());
+        assertEquals(10, read.size());
+    }
+
+    @Test
+    public void missingFileReadsAsEmpty() {
+        assertSame(StateSnapshot.EMPTY, StateSnapshot.read(new File(folder.getRoot(), "none")));
+    }
+
+    @Test
+    public void looksLikeIgnoresWhatIsNotShown() {
+        AcceptanceWindow window = new AcceptanceWindow(10);
+        WindowStats stats = new WindowStats(10);
+        boolean[] accepts = new boolean[10];
+        Arrays.fill(accepts, true);
+        addAll(window, stats, accepts);
+        StateSnapshot before = StateSnapshot.of(window, stats, 10);
+        StateSnapshot later = StateSnapshot.of(window, stats, 11);
+        assertFalse(before.equals(later));
+        assertTrue(before.looksLike(later));
+
+        stats.onAdd(window, false, window.add(false));
+        assertFalse(before.looksLike(StateSnapshot.of(window, stats, 11)));
+    }
+
+    private static byte[] header(int permille, int tier, int trend, int size, int capacity) {
+        ByteBuffer buffer = ByteBuffer.allocate(15);
+        buffer.put((byte) 1).putInt(permille).put((byte) tier).put((byte) trend).putInt(size).putInt(capacity);
+        return buffer.array();
+    }
+
+    private File write(byte[] data) throws IOException {
+        File file = folder.newFile();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static boolean[] decisions(int count, long seed) {
+        Random random = new Random(seed);
+        boolean[] decisions = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            decisions[i] = random.nextInt(10) < 7;
+        }
+        return decisions;
+    }
+
+    private static void addAll(AcceptanceWindow window, WindowStats stats, boolean[] decisions) {
+        for (boolean accepted : decisions) {
+            stats.onAdd(window, accepted, window.add(accepted));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.doordashtracker.benchmark;
+
+import com.doordashtracker.core.AcceptanceWindow;
+import com.doordashtracker.core.HistoryCodec;
+import com.doordashtracker.core.TrackerState;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Core tracker operations on the packed {@link AcceptanceWindow}. Compare with
+ * {@link LegacyHistoryBenchmark}, which runs the same operations the way the
+ * app did with an {@code ArrayList<Boolean>} and a CSV string.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AcceptanceWindowBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int windowSize;
+
+    private AcceptanceWindow window;
+    private AcceptanceWindow decodeTarget;
+    private byte[] encoded;
+    private byte[] encodeBuffer;
+    private boolean[] decisions;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        decisions = Decisions.generate(windowSize);
+        window = new AcceptanceWindow(windowSize);
+        for (boolean accepted : decisions) {
+            window.add(accepted);
+        }
+        decodeTarget = new AcceptanceWindow(windowSize);
+        encoded = HistoryCodec.encode(window);
+        encodeBuffer = new byte[encoded.length];
+    }
+
+    @Benchmark
+    public int appendEvict() {
+        boolean accepted = decisions[next];
+        next = next + 1 == decisions.length ? 0 : next + 1;
+        return window.add(accepted);
+    }
+
+    @Benchmark
+    public double acceptanceRate() {
+        return window.acceptanceRate();
+    }
+
+    @Benchmark
+    public int nextDeclineFallOff() {
+        return window.ordersUntilNextDeclineFallsOff();
+    }
+
+    @Benchmark
+    public int serialize() {
+        return HistoryCodec.encode(window, encodeBuffer, 0);
+    }
+
+    @Benchmark
+    public AcceptanceWindow deserialize() {
+        HistoryCodec.decode(encoded, 0, encoded.length, decodeTarget);
+        return decodeTarget;
+    }
+
+    @Benchmark
+    public TrackerState publishSnapshot() {
+        return new TrackerState(0, window);
+    }
+}
@@ -0,0 +1,23 @@
+package com.doordashtracker.benchmark;
+
+import java.util.Random;
+
+final class Decisions {
+
+    /** Roughly the mix a driver holding a 75% rate produces. */
+    private static final double ACCEPT_PROBABILITY = 0.75;
+    private static final long SEED = 42L;
+
+    private Decisions() {
+    }
+
+    /** Deterministic accept/decline sequence so every benchmark sees the same history. */
+    static boolean[] generate(int count) {
+        Random random = new Random(SEED);
+        boolean[] decisions = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            decisions[i] = random.nextDouble() < ACCEPT_PROBABILITY;
+        }
+        return decisions;
+    }
+}
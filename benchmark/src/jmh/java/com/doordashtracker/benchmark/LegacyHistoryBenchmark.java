@@ -0,0 +1,108 @@
+package com.doordashtracker.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Baseline reproducing the original MainActivity/FloatingARService code paths:
+ * an {@code ArrayList<Boolean>} with {@code remove(0)}, full rescans for the
+ * rate and the next fall-off, and the comma-separated SharedPreferences string.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LegacyHistoryBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int windowSize;
+
+    private List<Boolean> orderHistory;
+    private String encoded;
+    private boolean[] decisions;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        decisions = Decisions.generate(windowSize);
+        orderHistory = new ArrayList<>();
+        for (boolean accepted : decisions) {
+            orderHistory.add(accepted);
+        }
+        encoded = serialize();
+    }
+
+    @Benchmark
+    public List<Boolean> appendEvict() {
+        if (orderHistory.size() >= windowSize) {
+            orderHistory.remove(0);
+        }
+        orderHistory.add(decisions[next]);
+        next = next + 1 == decisions.length ? 0 : next + 1;
+        return orderHistory;
+    }
+
+    @Benchmark
+    public double acceptanceRate() {
+        int acceptedCount = 0;
+        for (Boolean order : orderHistory) {
+            if (order) {
+                acceptedCount++;
+            }
+        }
+        return (acceptedCount * 100.0) / orderHistory.size();
+    }
+
+    @Benchmark
+    public int nextDeclineFallOff() {
+        if (orderHistory.size() < windowSize) {
+            return -1;
+        }
+
+        int firstDeclineIndex = -1;
+        for (int i = 0; i < orderHistory.size(); i++) {
+            if (!orderHistory.get(i)) {
+                firstDeclineIndex = i;
+                break;
+            }
+        }
+
+        if (firstDeclineIndex == -1) {
+            return -1;
+        }
+
+        return firstDeclineIndex + 1;
+    }
+
+    @Benchmark
+    public String serialize() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < orderHistory.size(); i++) {
+            sb.append(orderHistory.get(i) ? "1" : "0");
+            if (i < orderHistory.size() - 1) {
+                sb.append(",");
+            }
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public List<Boolean> deserialize() {
+        List<Boolean> loaded = new ArrayList<>();
+        if (!encoded.isEmpty()) {
+            String[] parts = encoded.split(",");
+            for (String part : parts) {
+                loaded.add(part.equals("1"));
+            }
+        }
+        return loaded;
+    }
+}